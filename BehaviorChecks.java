@@ -0,0 +1,1502 @@
+import command.*;
+import core.*;
+import pricing.*;
+import dispatch.*;
+import exceptions.*;
+import journal.*;
+import logging.*;
+import metrics.*;
+import observer.*;
+import strategy.*;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Behaviour checks for the subsystems built around Trip: concurrency, persistence, dispatch,
+ * pricing and logging. Same pass/fail harness as Main, without points; {@code mvn test} runs
+ * it and fails the build when any check fails.
+ */
+public final class BehaviorChecks {
+
+    // ------------------------------------------------------------
+    // Tiny harness (supports checked exceptions)
+    // ------------------------------------------------------------
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private static int passed = 0;
+    private static int run = 0;
+
+    private static void check(String name, ThrowingRunnable r) {
+        run++;
+        try {
+            r.run();
+            passed++;
+            System.out.println("PASS " + name);
+        } catch (Throwable t) {
+            System.out.println("FAIL " + name + ": " + t.getClass().getSimpleName() + " - " + t.getMessage());
+            t.printStackTrace(System.out);
+        }
+    }
+
+    private static void expectThrows(String name, Class<? extends Throwable> expected, ThrowingRunnable r) {
+        run++;
+        try {
+            r.run();
+            System.out.println("FAIL " + name + ": expected " + expected.getSimpleName() + " but none was thrown");
+        } catch (Throwable t) {
+            if (expected.isInstance(t)) {
+                passed++;
+                System.out.println("PASS " + name);
+            } else {
+                System.out.println("FAIL " + name + ": threw " + t.getClass().getSimpleName()
+                        + " but expected " + expected.getSimpleName());
+                t.printStackTrace(System.out);
+            }
+        }
+    }
+
+    private static void assertTrue(boolean condition, String msgIfFalse) throws InvalidParameterException {
+        if (!condition) throw new InvalidParameterException(msgIfFalse);
+    }
+
+    private static void assertEquals(Object expected, Object actual, String msg) throws InvalidParameterException {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new InvalidParameterException(msg + " expected=" + expected + " actual=" + actual);
+        }
+    }
+
+    private static void assertEquals(double expected, double actual, String msg) throws InvalidParameterException {
+        if (Math.abs(expected - actual) > 1.0E-9) {
+            throw new InvalidParameterException(msg + " expected=" + expected + " actual=" + actual);
+        }
+    }
+
+    private static FareStrategy standard() throws InvalidParameterException {
+        return new StandardFare(2.50, 1.75);
+    }
+
+    private static Trip requestedTrip(String rider) throws Exception {
+        Trip trip = new Trip(rider, "DePaul Loop", "Wrigley Field", 5.2, standard());
+        trip.request();
+        return trip;
+    }
+
+    // Runs `task` on `threads` threads released together; returns how many completed without throwing.
+    private static int race(int threads, ThrowingRunnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run();
+                    succeeded.incrementAndGet();
+                } catch (Exception e) {
+                    // Losing the race is the expected outcome for all but one thread.
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return succeeded.get();
+    }
+
+    // ------------------------------------------------------------
+    // MAIN
+    // ------------------------------------------------------------
+    public static void main(String[] args) {
+        tripTransitions();
+        tripRegistry();
+        tripPool();
+        commands();
+        snapshots();
+        codec();
+        journal();
+        fareCompilation();
+        asyncDispatch();
+        dispatch();
+        batchDispatch();
+        pooling();
+        surge();
+        revenue();
+        tripIds();
+        stacklessExceptions();
+        fareQuotes();
+        logText();
+        tripMetrics();
+        virtualThreadDispatch();
+
+        System.out.println("\nCHECKS: " + passed + " of " + run);
+        if (passed != run) {
+            System.exit(1);
+        }
+    }
+
+    // ============================================================
+    // Trip transitions (lock-free CAS, per-trip sequence)
+    // ============================================================
+    private static void tripTransitions() {
+        check("Trip: exactly one of many racing accepts wins", () -> {
+            for (int round = 0; round < 50; round++) {
+                Trip trip = requestedTrip("Riley");
+                AtomicInteger driver = new AtomicInteger();
+                int winners = race(8, () -> trip.accept("driver-" + driver.incrementAndGet()));
+                assertEquals(1, winners, "Winning accepts");
+                assertTrue(trip.getStatus() == TripStatus.ACCEPTED, "Trip should be ACCEPTED");
+                assertTrue(trip.getDriverName().startsWith("driver-"), "Winner's driver should be recorded");
+                assertEquals(2L, trip.getSequence(), "Sequence after request and accept");
+            }
+        });
+
+        check("Trip: racing start and cancel leave one outcome", () -> {
+            for (int round = 0; round < 50; round++) {
+                Trip trip = requestedTrip("Riley");
+                trip.accept("Ava");
+                List<TripEvent> seen = Collections.synchronizedList(new ArrayList<>());
+                trip.addObserver(seen::add);
+                int winners = race(4, () -> {
+                    if (Thread.currentThread().threadId() % 2 == 0) {
+                        trip.cancel();
+                    } else {
+                        trip.start();
+                    }
+                });
+                assertEquals(1, winners, "Only one of start/cancel may win from ACCEPTED");
+                assertEquals(1, seen.size(), "Exactly one event for the winning move");
+            }
+        });
+
+        check("Trip: events carry consecutive sequence numbers", () -> {
+            Trip trip = new Trip("Casey", "A", "B", 2.0, standard());
+            List<TripEvent> seen = new ArrayList<>();
+            trip.addObserver(seen::add);
+            trip.request();
+            trip.accept("Ava");
+            trip.start();
+            trip.complete();
+            for (int i = 0; i < seen.size(); i++) {
+                assertEquals(i + 1L, seen.get(i).getSequence(), "Sequence of event " + seen.get(i).getType());
+            }
+            assertEquals(4L, trip.getSequence(), "Trip sequence");
+        });
+
+        expectThrows("Trip: rejected move reports trip, from and target status", IllegalTransitionException.class, () -> {
+            Trip trip = new Trip("Pat", "A", "B", 3.0, standard());
+            try {
+                trip.start();
+            } catch (IllegalTransitionException e) {
+                assertEquals(trip.getTripId(), e.getTripId(), "Trip id");
+                assertTrue(e.getFromStatus() == TripStatus.CREATED, "From status");
+                assertTrue(e.getTargetStatus() == TripStatus.STARTED, "Target status");
+                throw e;
+            }
+        });
+
+        check("Journal: events replayed out of order rebuild the latest state", () -> {
+            Path directory = Files.createTempDirectory("journal-order");
+            Trip trip = new Trip("Jordan", "S", "T", 6.0, standard());
+            List<TripEvent> seen = new ArrayList<>();
+            trip.addObserver(seen::add);
+            trip.request();
+            trip.accept("Mia");
+            trip.start();
+            trip.complete();
+            Collections.reverse(seen);
+            try (TripJournal journal = new TripJournal(directory, 1 << 20, FsyncPolicy.NEVER, 0)) {
+                for (TripEvent event : seen) {
+                    journal.append(event);
+                }
+            }
+            TripState state = JournalRecovery.recover(directory).get(trip.getTripId());
+            assertTrue(state.getStatus() == TripStatus.COMPLETED, "Recovered status was " + state.getStatus());
+            assertEquals("Mia", state.getDriverName(), "Recovered driver");
+            assertEquals(trip.getLastFare(), state.getLastFare(), "Recovered fare");
+            assertEquals(4L, state.getSequence(), "Recovered sequence");
+        });
+    }
+
+    // ============================================================
+    // Trip registry (TripId keys, active indexes, pooled reuse)
+    // ============================================================
+    private static void tripRegistry() {
+        check("Registry: lookup by TripId and by its string form", () -> {
+            TripRegistry registry = new TripRegistry(4);
+            Trip trip = requestedTrip("Sam");
+            registry.register(trip);
+            assertTrue(registry.get(trip.getId()) == trip, "Lookup by TripId");
+            assertTrue(registry.get(trip.getTripId()) == trip, "Lookup by string id");
+            assertTrue(registry.get("not-a-trip-id") == null, "Malformed ids are simply absent");
+        });
+
+        check("Registry: active indexes follow the trip to a terminal state", () -> {
+            TripRegistry registry = new TripRegistry(4);
+            Trip trip = requestedTrip("Sam");
+            registry.register(trip);
+            trip.accept("Noor");
+            assertTrue(registry.activeTripsForDriver("Noor").contains(trip), "Driver index after accept");
+            trip.start();
+            trip.complete();
+            assertTrue(registry.activeTripsForRider("Sam").isEmpty(), "Rider index after completion");
+            assertTrue(registry.activeTripsForDriver("Noor").isEmpty(), "Driver index after completion");
+        });
+
+        check("Registry: a released pooled trip leaves the registry before reuse", () -> {
+            TripPool pool = new TripPool(new ObserverList(), 4);
+            TripRegistry registry = new TripRegistry(4);
+            Trip trip = pool.acquire("Lee", "A", "B", 2.0, standard());
+            TripId first = trip.getId();
+            registry.register(trip);
+            trip.request();
+            trip.cancel();
+            assertTrue(pool.release(trip), "Release of a cancelled trip");
+            assertTrue(registry.get(first) == null, "Old id must be gone from the registry");
+            Trip reused = pool.acquire("Kim", "C", "D", 3.0, standard());
+            assertTrue(reused == trip, "Same object handed out again");
+            registry.register(reused);
+            assertTrue(registry.get(reused.getId()) == reused, "Reused trip registers under its new id");
+            assertEquals(1, registry.size(), "Registry size");
+        });
+    }
+
+    // ============================================================
+    // Trip pool (single hand-out, consistent identity)
+    // ============================================================
+    private static void tripPool() {
+        expectThrows("Pool: a named transition by a stale id leaves the reused trip alone",
+                IllegalTransitionException.class, () -> {
+            TripPool pool = new TripPool(new ObserverList(), 4);
+            Trip trip = pool.acquire("Lee", "A", "B", 2.0, standard());
+            TripId oldId = trip.getId();
+            trip.request(oldId);
+            trip.cancel(oldId);
+            assertTrue(pool.release(trip), "Release");
+            Trip reused = pool.acquire("Kim", "C", "D", 3.0, standard());
+            reused.request();
+            try {
+                reused.cancel(oldId);
+            } finally {
+                assertTrue(reused.getStatus() == TripStatus.REQUESTED, "New ride untouched");
+            }
+        });
+
+        check("Pool: racing releases of one trip park it once", () -> {
+            for (int round = 0; round < 50; round++) {
+                TripPool pool = new TripPool(new ObserverList(), 8);
+                Trip trip = pool.acquire("Lee", "A", "B", 2.0, standard());
+                trip.request();
+                trip.cancel();
+                AtomicInteger parked = new AtomicInteger();
+                race(4, () -> {
+                    if (pool.release(trip)) {
+                        parked.incrementAndGet();
+                    }
+                });
+                assertEquals(1, parked.get(), "Successful releases");
+            }
+        });
+
+        check("Pool: a released trip is not released again", () -> {
+            TripPool pool = new TripPool(new ObserverList(), 8);
+            Trip trip = pool.acquire("Lee", "A", "B", 2.0, standard());
+            trip.request();
+            assertTrue(!pool.release(trip), "A live trip cannot be released");
+            trip.cancel();
+            assertTrue(pool.release(trip), "First release");
+            assertTrue(!pool.release(trip), "Second release");
+            Trip first = pool.acquire("Kim", "C", "D", 3.0, standard());
+            Trip second = pool.acquire("Max", "E", "F", 4.0, standard());
+            assertTrue(first != second, "One release hands the object out once");
+        });
+
+        check("Pool: a reused trip reports only its new ride", () -> {
+            TripPool pool = new TripPool(new ObserverList(), 8);
+            Trip trip = pool.acquire("Lee", "A", "B", 2.0, standard());
+            TripId oldId = trip.getId();
+            trip.request();
+            trip.accept("Ava");
+            trip.start();
+            trip.complete();
+            assertTrue(pool.release(trip), "Release");
+            Trip reused = pool.acquire("Kim", "C", "D", 3.0, standard());
+            assertTrue(reused == trip && !oldId.equals(reused.getId()), "Reused under a fresh id");
+            assertEquals("Kim", reused.getRiderName(), "Rider");
+            assertEquals(3.0, reused.getDistanceMiles(), "Distance");
+            assertTrue(reused.getStatus() == TripStatus.CREATED && reused.getDriverName() == null
+                    && !reused.hasLastFare() && reused.getSequence() == 0, "Fresh state");
+        });
+    }
+
+    // ============================================================
+    // Commands (idempotency window, own-move attribution)
+    // ============================================================
+    private static void commands() {
+        check("Commands: a command that throws unexpectedly frees its key", () -> {
+            TripRegistry registry = new TripRegistry(4);
+            TripCommandProcessor processor = new TripCommandProcessor(registry, 64);
+            Trip trip = requestedTrip("Rae");
+            registry.register(trip);
+            AtomicInteger throwsLeft = new AtomicInteger(1);
+            trip.addObserver(event -> {
+                if (throwsLeft.getAndDecrement() > 0) {
+                    throw new AssertionError("observer bug");
+                }
+            });
+            TripCommand cancel = new TripCommand(trip.getTripId(), TripTransition.CANCEL, "k-err");
+            try {
+                processor.apply(cancel);
+                throw new IllegalStateException("Expected the observer's error to escape");
+            } catch (AssertionError expected) {
+                // The error is the caller's to see; the key must not stay pending.
+            }
+            assertEquals(0, processor.getWindowOccupancy(), "Key released");
+            assertTrue(processor.apply(cancel) != CommandResult.DUPLICATE, "Retry is not a duplicate");
+        });
+
+        check("Commands: a retried key is answered as a duplicate", () -> {
+            TripRegistry registry = new TripRegistry(4);
+            TripCommandProcessor processor = new TripCommandProcessor(registry, 64);
+            Trip trip = requestedTrip("Rae");
+            registry.register(trip);
+            TripCommand accept = new TripCommand(trip.getTripId(), TripTransition.ACCEPT, "Ava", "k-1");
+            assertEquals(CommandResult.APPLIED, processor.apply(accept), "First attempt");
+            assertEquals(CommandResult.DUPLICATE, processor.apply(accept), "Retry");
+            assertEquals(CommandResult.UNKNOWN_TRIP,
+                    processor.apply(new TripCommand("nope", TripTransition.CANCEL, "k-2")), "Malformed id");
+        });
+
+        check("Commands: an in-flight key survives eviction pressure", () -> {
+            TripRegistry registry = new TripRegistry(4);
+            TripCommandProcessor processor = new TripCommandProcessor(registry, 1);
+            Trip trip = requestedTrip("Rae");
+            registry.register(trip);
+            TripCommand accept = new TripCommand(trip.getTripId(), TripTransition.ACCEPT, "Ava", "slow");
+            List<CommandResult> retries = new ArrayList<>();
+            trip.addObserver(event -> {
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        Trip other = requestedTrip("Other");
+                        registry.register(other);
+                        processor.apply(new TripCommand(other.getTripId(), TripTransition.CANCEL, "fill-" + i));
+                    }
+                    retries.add(processor.apply(accept));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertEquals(CommandResult.APPLIED, processor.apply(accept), "Original");
+            assertEquals(List.of(CommandResult.DUPLICATE), retries, "Retry while the original runs");
+        });
+
+        check("Commands: only the command whose move won is APPLIED", () -> {
+            for (int round = 0; round < 50; round++) {
+                TripRegistry registry = new TripRegistry(4);
+                TripCommandProcessor processor = new TripCommandProcessor(registry, 64);
+                Trip trip = requestedTrip("Rae");
+                registry.register(trip);
+                trip.addObserver(event -> {
+                    throw new IllegalStateException("observer down");
+                });
+                AtomicInteger key = new AtomicInteger();
+                AtomicInteger applied = new AtomicInteger();
+                race(4, () -> {
+                    int k = key.incrementAndGet();
+                    TripCommand cancel = new TripCommand(trip.getTripId(), TripTransition.CANCEL, "c-" + k);
+                    if (processor.apply(cancel) == CommandResult.APPLIED) {
+                        applied.incrementAndGet();
+                    }
+                });
+                assertEquals(1, applied.get(), "APPLIED results");
+                assertEquals(3L, processor.getCount(CommandResult.ILLEGAL_TRANSITION), "Losers");
+            }
+        });
+
+        check("Commands: a stale holder cannot move a reused trip", () -> {
+            TripPool pool = new TripPool(new ObserverList(), 4);
+            Trip trip = pool.acquire("Lee", "A", "B", 2.0, standard());
+            TripId oldId = trip.getId();
+            trip.request();
+            trip.cancel();
+            assertTrue(pool.release(trip), "Release");
+            Trip reused = pool.acquire("Kim", "C", "D", 3.0, standard());
+            assertEquals(TransitionOutcome.STALE, reused.tryTransition(oldId, TripStatus.CANCELLED, null), "Outcome");
+            assertTrue(reused.getStatus() == TripStatus.CREATED, "New ride untouched");
+        });
+    }
+
+    // ============================================================
+    // Snapshots (checkpoint plus journal tail)
+    // ============================================================
+    private static void snapshots() {
+        check("Snapshots: checkpoint plus tail replay rebuilds live trips with their strategy", () -> {
+            Path journalDir = Files.createTempDirectory("snap-journal");
+            Path checkpointDir = Files.createTempDirectory("snap-checkpoints");
+            Path emptyJournal = Files.createTempDirectory("snap-empty");
+            Trip early = new Trip("Ari", "A", "B", 4.0, new SurgeFare(standard(), 1.5));
+            Trip late = new Trip("Bo", "C", "D", 2.0, standard());
+            try (TripJournal journal = new TripJournal(journalDir, 1 << 20, FsyncPolicy.NEVER, 0)) {
+                TripSnapshotter snapshotter = new TripSnapshotter(checkpointDir, journal, 3_600_000, 4);
+                early.addObserver(snapshotter);
+                late.addObserver(snapshotter);
+                early.request();
+                early.accept("Mia");
+                snapshotter.checkpoint();
+
+                TripState checkpointed = JournalRecovery.recover(emptyJournal, checkpointDir).get(early.getTripId());
+                assertTrue(checkpointed.getStatus() == TripStatus.ACCEPTED, "Checkpointed status");
+                assertEquals("SurgeFare", checkpointed.getFareStrategyName(), "Checkpointed strategy");
+
+                early.start();
+                late.request();
+                journal.commit();
+                // No close: the tail after the checkpoint exists only in the journal, as after a crash.
+            }
+            Map<String, TripState> recovered = JournalRecovery.recover(journalDir, checkpointDir);
+            TripState first = recovered.get(early.getTripId());
+            assertTrue(first.getStatus() == TripStatus.STARTED, "Tail event applied on top of the checkpoint");
+            assertEquals("Mia", first.getDriverName(), "Driver from the checkpoint");
+            assertEquals("SurgeFare", first.getFareStrategyName(), "Strategy of a live trip");
+            assertEquals(3L, first.getSequence(), "Sequence");
+            TripState second = recovered.get(late.getTripId());
+            assertTrue(second != null && second.getStatus() == TripStatus.REQUESTED, "Trip seen only in the tail");
+            assertEquals("StandardFare", second.getFareStrategyName(), "Strategy from a REQUESTED event");
+        });
+
+        check("Snapshots: terminal trips are not recovered as live", () -> {
+            Path journalDir = Files.createTempDirectory("snap-journal");
+            Path checkpointDir = Files.createTempDirectory("snap-checkpoints");
+            Trip trip = new Trip("Cy", "A", "B", 1.0, standard());
+            try (TripJournal journal = new TripJournal(journalDir, 1 << 20, FsyncPolicy.NEVER, 0);
+                 TripSnapshotter snapshotter = new TripSnapshotter(checkpointDir, journal, 3_600_000, 4)) {
+                trip.addObserver(snapshotter);
+                trip.request();
+                snapshotter.checkpoint();
+                trip.cancel();
+            }
+            assertTrue(JournalRecovery.recover(journalDir, checkpointDir).isEmpty(), "No live trips");
+        });
+
+        check("Snapshots: a corrupt but complete checkpoint falls back to journal replay", () -> {
+            Path journalDir = Files.createTempDirectory("snap-journal");
+            Path checkpointDir = Files.createTempDirectory("snap-checkpoints");
+            Trip trip = new Trip("Di", "A", "B", 1.0, standard());
+            try (TripJournal journal = new TripJournal(journalDir, 1 << 20, FsyncPolicy.NEVER, 0);
+                 TripSnapshotter snapshotter = new TripSnapshotter(checkpointDir, journal, 3_600_000, 4)) {
+                trip.addObserver(snapshotter);
+                trip.request();
+                snapshotter.checkpoint();
+            }
+            // Header, entry marker, trip id and rider precede the status ordinal.
+            int statusOffset = 4 + 1 + 8 + 1 + 2 + trip.getTripId().length() + 1 + 2 + trip.getRiderName().length();
+            try (Stream<Path> files = Files.list(checkpointDir)) {
+                for (Path file : files.toList()) {
+                    byte[] bytes = Files.readAllBytes(file);
+                    if (bytes.length > statusOffset) {
+                        bytes[statusOffset] = 0x7F;
+                        Files.write(file, bytes);
+                    }
+                }
+            }
+            TripState recovered = JournalRecovery.recover(journalDir, checkpointDir).get(trip.getTripId());
+            assertTrue(recovered != null && recovered.getStatus() == TripStatus.REQUESTED, "Replayed from the journal");
+        });
+    }
+
+    // ============================================================
+    // Event codec (fixed-size records, name dictionary)
+    // ============================================================
+    private static void codec() {
+        check("Codec: every event field survives a round trip", () -> {
+            Trip trip = new Trip("Quinn", "A", "B", 3.0, standard());
+            List<TripEvent> seen = new ArrayList<>();
+            trip.addObserver(seen::add);
+            trip.request();
+            trip.accept("Ava");
+            trip.start();
+            trip.complete();
+            TripEventCodec codec = new TripEventCodec(new NameDictionary());
+            java.nio.ByteBuffer buffer = ByteBuffer.allocate(seen.size() * TripEventFlyweight.BYTES);
+            for (TripEvent event : seen) {
+                codec.encode(event, buffer);
+            }
+            buffer.flip();
+            for (TripEvent expected : seen) {
+                TripEvent actual = codec.decode(buffer);
+                assertEquals(expected.getId(), actual.getId(), "Trip id");
+                assertEquals(expected.getSequence(), actual.getSequence(), "Sequence");
+                assertEquals(expected.getType(), actual.getType(), "Type");
+                assertEquals(expected.getEpochNanos(), actual.getEpochNanos(), "Timestamp");
+                assertEquals(expected.getRiderName(), actual.getRiderName(), "Rider");
+                assertEquals(expected.getDriverName(), actual.getDriverName(), "Driver");
+                assertEquals(expected.getFare(), actual.getFare(), "Fare");
+                assertEquals(expected.getFareStrategyName(), actual.getFareStrategyName(), "Strategy");
+            }
+        });
+
+        check("Codec: records decode elsewhere once the names are defined in order", () -> {
+            NameDictionary source = new NameDictionary();
+            TripEventCodec writer = new TripEventCodec(source);
+            java.nio.ByteBuffer buffer = ByteBuffer.allocate(TripEventFlyweight.BYTES);
+            TripEvent event = new TripEvent(new TripId(7, 9), 3, TripEventType.STARTED, 42L, "Rae", "Ava",
+                    false, 0.0, "StandardFare");
+            writer.encode(event, buffer);
+            NameDictionary copy = new NameDictionary();
+            for (int id = 0; id < source.size(); id++) {
+                copy.define(id, source.nameOf(id));
+            }
+            buffer.flip();
+            TripEvent decoded = new TripEventCodec(copy).decode(buffer);
+            assertEquals("Ava", decoded.getDriverName(), "Driver");
+            assertEquals("StandardFare", decoded.getFareStrategyName(), "Strategy");
+            assertTrue(decoded.getFare() == null, "No fare");
+        });
+
+        expectThrows("Codec: a corrupt type byte is rejected", IllegalArgumentException.class, () -> {
+            TripEventCodec codec = new TripEventCodec(new NameDictionary());
+            java.nio.ByteBuffer buffer = ByteBuffer.allocate(TripEventFlyweight.BYTES);
+            codec.encode(new TripEvent(new TripId(1, 2), TripEventType.REQUESTED, 1L, "Rae", null, null), buffer);
+            buffer.put(52, (byte) 99);
+            buffer.flip();
+            codec.decode(buffer);
+        });
+
+        check("Codec: string timestamps are only parsed when read", () -> {
+            TripEvent event = new TripEvent("00000000-0000-0001-0000-000000000002", TripEventType.REQUESTED,
+                    "not a timestamp", "Rae", null, null);
+            assertEquals("not a timestamp", event.getTimestamp(), "Timestamp kept as given");
+            TripEvent valid = new TripEvent("00000000-0000-0001-0000-000000000002", TripEventType.REQUESTED,
+                    "2024-01-02T03:04:05.000000006Z", "Rae", null, null);
+            assertEquals(1704164645_000_000_006L, valid.getEpochNanos(), "Parsed epoch nanos");
+        });
+    }
+
+    // ============================================================
+    // Journal (codec records, torn tails, failure latching)
+    // ============================================================
+    private static void journal() {
+        check("Journal: a torn last record is dropped and everything before it recovers", () -> {
+            Path directory = Files.createTempDirectory("journal-torn");
+            List<Trip> trips = new ArrayList<>();
+            try (TripJournal journal = new TripJournal(directory, 1 << 20, FsyncPolicy.NEVER, 0)) {
+                for (int i = 0; i < 10; i++) {
+                    Trip trip = new Trip("Rider " + i, "A", "B", 2.0, standard());
+                    trip.addObserver(journal);
+                    trip.request();
+                    trips.add(trip);
+                }
+            }
+            Path segment;
+            try (Stream<Path> files = Files.list(directory)) {
+                segment = files.findFirst().orElseThrow();
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(segment));
+            int last = 0;
+            for (int at = 0; bytes.getInt(at) != 0; at += 8 + bytes.getInt(at)) {
+                last = at;
+            }
+            bytes.put(last + 8 + 5, (byte) (bytes.get(last + 8 + 5) ^ 0x5A));
+            Files.write(segment, bytes.array());
+
+            Map<String, TripState> recovered = JournalRecovery.recover(directory);
+            assertEquals(9, recovered.size(), "Trips before the torn record");
+            assertTrue(!recovered.containsKey(trips.get(9).getTripId()), "Torn trip is not recovered");
+            assertEquals("Rider 8", recovered.get(trips.get(8).getTripId()).getRiderName(), "Names resolve");
+        });
+
+        check("Journal: names resolve across many segments", () -> {
+            Path directory = Files.createTempDirectory("journal-roll");
+            List<Trip> trips = new ArrayList<>();
+            try (TripJournal journal = new TripJournal(directory, 64 * 1024, FsyncPolicy.NEVER, 0)) {
+                for (int i = 0; i < 1500; i++) {
+                    Trip trip = new Trip("Rider " + i, "A", "B", 1.0 + i % 7, standard());
+                    trip.addObserver(journal);
+                    trip.request();
+                    trip.accept("Driver " + i % 13);
+                    trip.start();
+                    trip.complete();
+                    trips.add(trip);
+                }
+                assertEquals(0L, journal.getDroppedEvents(), "Dropped events");
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                assertTrue(files.count() > 1, "Journal should span several segments");
+            }
+            Map<String, TripState> recovered = JournalRecovery.recover(directory);
+            for (Trip trip : trips) {
+                TripState state = recovered.get(trip.getTripId());
+                assertEquals(trip.getRiderName(), state.getRiderName(), "Rider");
+                assertEquals(trip.getDriverName(), state.getDriverName(), "Driver");
+                assertEquals(trip.getLastFare(), state.getLastFare(), "Fare");
+                assertEquals("StandardFare", state.getFareStrategyName(), "Strategy");
+            }
+        });
+
+        check("Journal: unwritable events are dropped without failing the transition", () -> {
+            Path directory = Files.createTempDirectory("journal-fail");
+            TripJournal journal = new TripJournal(directory, 1 << 20, FsyncPolicy.NEVER, 0);
+            Trip huge = new Trip("x".repeat(40_000), "A", "B", 2.0, standard());
+            huge.addObserver(journal);
+            huge.request();
+            assertEquals(1L, journal.getDroppedEvents(), "Oversized name is dropped");
+            assertTrue(journal.getFailure() == null, "One bad event does not fail the journal");
+            journal.close();
+            Trip late = requestedTrip("Late");
+            journal.onTripEvent(new TripEvent(late.getId(), TripEventType.REQUESTED, 1L, "Late", null, null));
+            assertEquals(2L, journal.getDroppedEvents(), "Events after close are dropped");
+        });
+    }
+
+    // ============================================================
+    // Fare compilation (compiled vs interpreted)
+    // ============================================================
+    private static void fareCompilation() {
+        check("Fares: compiled and batch prices match the interpreted strategy tree", () -> {
+            List<FareStrategy> trees = List.of(
+                    standard(),
+                    new SharedRideFare(3.0, 1.25, 0.3),
+                    new SurgeFare(standard(), 1.8),
+                    new SurgeFare(new SurgeFare(new SharedRideFare(2.0, 2.0, 0.15), 1.2), 2.5));
+            double[] distances = {0.1, 1.0, 2.5, 7.3, 19.99, 42.0, 130.0};
+            double[] batch = new double[distances.length];
+            for (FareStrategy tree : trees) {
+                FareStrategy compiled = FareCompiler.compile(tree);
+                assertTrue(compiled instanceof CompiledFare, tree.name() + " should compile");
+                tree.calculateFares(distances, batch);
+                for (int i = 0; i < distances.length; i++) {
+                    Trip trip = new Trip("Eve", "A", "B", distances[i], tree);
+                    double interpreted = tree.calculateFare(trip);
+                    assertTrue(Math.abs(interpreted - compiled.calculateFare(trip)) <= 1e-9 * interpreted,
+                            tree.name() + " compiled price at " + distances[i]);
+                    assertTrue(Math.abs(interpreted - batch[i]) <= 1e-9 * interpreted,
+                            tree.name() + " batch price at " + distances[i]);
+                }
+            }
+        });
+
+        check("Fares: a subclass that overrides pricing is never flattened", () -> {
+            FareStrategy flat = new StandardFare(2.50, 1.75) {
+                @Override
+                public double calculateFare(Trip trip) {
+                    return 10.0;
+                }
+            };
+            FareStrategy surged = new SurgeFare(flat, 2.0);
+            assertTrue(FareCompiler.compile(flat) == flat, "Subclass returned unchanged");
+            assertTrue(FareCompiler.compile(surged) == surged, "Tree containing it returned unchanged");
+            assertEquals(20.0, surged.calculateFare(new Trip("Eve", "A", "B", 3.0, surged)), "Override honoured");
+            double[] batch = new double[2];
+            surged.calculateFares(new double[] {3.0, 8.0}, batch);
+            assertEquals(20.0, batch[0], "Batch honours the override");
+            assertEquals(20.0, batch[1], "Batch honours the override at every distance");
+        });
+
+        check("Fares: batch pricing falls back to per-trip pricing for a zone surge", () -> {
+            SurgeEngine surge = new SurgeEngine(new TripRegistry(), location -> "downtown",
+                    () -> Map.of("downtown", 1), 0.5, 1.0, 3.0);
+            FareStrategy zoned = new ZoneSurgeFare(standard(), surge);
+            double[] distances = {1.0, 4.5, 12.0};
+            double[] batch = new double[distances.length];
+            zoned.calculateFares(distances, batch);
+            FareBatch.calculateFaresParallel(zoned, distances, new double[distances.length]);
+            for (int i = 0; i < distances.length; i++) {
+                assertEquals(zoned.calculateFare(new Trip("Eve", "A", "B", distances[i], zoned)), batch[i],
+                        "Price at " + distances[i]);
+            }
+        });
+    }
+
+    // ============================================================
+    // Async dispatch (lanes, flush, close)
+    // ============================================================
+    private static void asyncDispatch() {
+        check("Async: each trip's events arrive in order and flush waits for them", () -> {
+            for (BackpressurePolicy policy : List.of(BackpressurePolicy.BLOCK, BackpressurePolicy.CALLER_RUNS)) {
+                try (AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(4, 8, 4, policy)) {
+                    Map<TripId, List<Long>> seen = new ConcurrentHashMap<>();
+                    TripObserver recorder = event ->
+                            seen.computeIfAbsent(event.getId(), id -> Collections.synchronizedList(new ArrayList<>()))
+                                    .add(event.getSequence());
+                    List<Trip> trips = new ArrayList<>();
+                    for (int i = 0; i < 40; i++) {
+                        Trip trip = new Trip("Rider " + i, "A", "B", 2.0, standard());
+                        trip.setEventDispatcher(dispatcher);
+                        trip.addObserver(recorder);
+                        trips.add(trip);
+                    }
+                    for (Trip trip : trips) {
+                        trip.request();
+                        trip.accept("Ava");
+                        trip.start();
+                        trip.complete();
+                    }
+                    dispatcher.flush();
+                    for (Trip trip : trips) {
+                        List<Long> sequences = seen.get(trip.getId());
+                        if (policy == BackpressurePolicy.BLOCK) {
+                            assertEquals(List.of(1L, 2L, 3L, 4L), sequences, policy + " order");
+                        } else {
+                            assertEquals(4, sequences.size(), policy + " delivered before flush returns");
+                        }
+                    }
+                }
+            }
+        });
+
+        check("Async: events dispatched after close are rejected, not blocked on", () -> {
+            AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(1, 1, 1, BackpressurePolicy.BLOCK);
+            List<TripEvent> seen = Collections.synchronizedList(new ArrayList<>());
+            dispatcher.close();
+            Trip trip = new Trip("Zed", "A", "B", 2.0, standard());
+            trip.setEventDispatcher(dispatcher);
+            trip.addObserver(seen::add);
+            trip.request();
+            trip.cancel();
+            assertEquals(2L, dispatcher.getRejectedEvents(), "Rejected events");
+            assertTrue(seen.isEmpty(), "Nothing delivered after close");
+            dispatcher.flush();
+        });
+    }
+
+    // ============================================================
+    // Dispatch (driver index, nearest-driver matching)
+    // ============================================================
+    private static LocationResolver grid() {
+        // "lat,lon" strings, so tests can place pickups anywhere.
+        return location -> {
+            String[] parts = location.split(",");
+            return new GeoPoint(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]));
+        };
+    }
+
+    private static void dispatch() {
+        check("Dispatch: a driver removed while moving never lingers in a cell", () -> {
+            for (int round = 0; round < 200; round++) {
+                DriverIndex index = new DriverIndex(0.01, 4);
+                index.updatePosition("Kai", new GeoPoint(41.0, -87.0));
+                AtomicInteger step = new AtomicInteger();
+                race(2, () -> {
+                    if (step.getAndIncrement() == 0) {
+                        index.remove("Kai");
+                    } else {
+                        for (int i = 1; i <= 5; i++) {
+                            index.updatePosition("Kai", new GeoPoint(41.0 + i * 0.011, -87.0));
+                        }
+                    }
+                });
+                List<String> found = index.nearestAvailable(new GeoPoint(41.03, -87.0), 5);
+                boolean present = index.positionOf("Kai") != null;
+                assertEquals(present ? List.of("Kai") : List.of(), found, "Index and cells agree");
+            }
+        });
+
+        check("Dispatch: re-dispatching a trip does not release its driver twice", () -> {
+            AtomicInteger releases = new AtomicInteger();
+            DriverIndex index = new DriverIndex(0.01, 4) {
+                @Override
+                public void release(String driverName) {
+                    releases.incrementAndGet();
+                    super.release(driverName);
+                }
+            };
+            index.updatePosition("Kai", new GeoPoint(41.0, -87.0));
+            index.updatePosition("Lou", new GeoPoint(41.001, -87.0));
+            DispatchEngine engine = new DispatchEngine(index, grid(), 3);
+            Trip trip = new Trip("Ann", "41.0,-87.0", "41.1,-87.1", 5.0, standard());
+            trip.request();
+            String driver = engine.dispatch(trip);
+            assertEquals("Kai", driver, "Nearest driver");
+            try {
+                engine.dispatch(trip);
+                throw new IllegalStateException("An accepted trip cannot be dispatched again");
+            } catch (IllegalTransitionException expected) {
+                assertEquals(1, releases.get(), "Claim of the second attempt released");
+            }
+            trip.start();
+            trip.complete();
+            assertEquals(2, releases.get(), "One release when the trip completes");
+            assertTrue(index.isAvailable("Kai"), "Driver free again");
+        });
+    }
+
+    // ============================================================
+    // Batch dispatch (auction assignment)
+    // ============================================================
+    private static double bestTotal(double[][] cost, int trip, boolean[] used) {
+        if (trip == cost.length) {
+            return 0.0;
+        }
+        double best = Double.MAX_VALUE;
+        for (int d = 0; d < used.length; d++) {
+            if (!used[d]) {
+                used[d] = true;
+                best = Math.min(best, cost[trip][d] + bestTotal(cost, trip + 1, used));
+                used[d] = false;
+            }
+        }
+        return best;
+    }
+
+    private static void batchDispatch() {
+        check("Auction: beats nearest-first where greedy is wrong", () -> {
+            DriverIndex index = new DriverIndex(0.01, 8);
+            index.updatePosition("Near", new GeoPoint(41.005, -87.0));
+            index.updatePosition("Far", new GeoPoint(40.994, -87.0));
+            BatchDispatcher batch = new BatchDispatcher(new DispatchEngine(index, grid(), 2), 2, 1.0, 0.001, 100.0);
+            Trip first = new Trip("Ann", "41.0,-87.0", "41.2,-87.0", 5.0, standard());
+            Trip second = new Trip("Ben", "41.01,-87.0", "41.2,-87.0", 5.0, standard());
+            first.request();
+            second.request();
+            batch.submit(first);
+            batch.submit(second);
+            assertEquals(2, batch.tick(), "Matched trips");
+            assertEquals("Far", first.getDriverName(), "First trip gives up the shared nearest driver");
+            assertEquals("Near", second.getDriverName(), "Second trip");
+        });
+
+        check("Auction: total pickup distance is within n*epsilon of the optimum", () -> {
+            Random random = new Random(13);
+            double epsilonKm = 0.001;
+            for (int round = 0; round < 30; round++) {
+                int n = 5;
+                DriverIndex index = new DriverIndex(0.01, 20);
+                LocationResolver locations = grid();
+                List<GeoPoint> driverPositions = new ArrayList<>();
+                for (int d = 0; d < n; d++) {
+                    GeoPoint position = new GeoPoint(41.0 + random.nextDouble() * 0.05, -87.0 + random.nextDouble() * 0.05);
+                    driverPositions.add(position);
+                    index.updatePosition("d" + d, position);
+                }
+                BatchDispatcher batch = new BatchDispatcher(new DispatchEngine(index, locations, n), n, 1.0,
+                        epsilonKm, 1000.0);
+                List<Trip> trips = new ArrayList<>();
+                double[][] cost = new double[n][n];
+                for (int t = 0; t < n; t++) {
+                    String pickup = (41.0 + random.nextDouble() * 0.05) + "," + (-87.0 + random.nextDouble() * 0.05);
+                    Trip trip = new Trip("r" + t, pickup, "41.5,-87.5", 5.0, standard());
+                    trip.request();
+                    batch.submit(trip);
+                    trips.add(trip);
+                    for (int d = 0; d < n; d++) {
+                        cost[t][d] = locations.resolve(pickup).distanceKm(driverPositions.get(d));
+                    }
+                }
+                assertEquals(n, batch.tick(), "Every trip matched");
+                double total = 0.0;
+                for (int t = 0; t < n; t++) {
+                    total += cost[t][Integer.parseInt(trips.get(t).getDriverName().substring(1))];
+                }
+                double optimum = bestTotal(cost, 0, new boolean[n]);
+                assertTrue(total <= optimum + n * epsilonKm + 1e-9,
+                        "Round " + round + ": total " + total + " vs optimum " + optimum);
+            }
+        });
+    }
+
+    // ============================================================
+    // Pooling (grouping, search span, shared pricing)
+    // ============================================================
+    private static void pooling() {
+        check("Pooling: compatible trips share a driver, others wait", () -> {
+            DriverIndex index = new DriverIndex(0.01, 8);
+            index.updatePosition("Kai", new GeoPoint(41.0, -87.0));
+            index.updatePosition("Lou", new GeoPoint(41.0, -87.001));
+            DispatchEngine engine = new DispatchEngine(index, grid(), 3);
+            SharedRideFare shared = new SharedRideFare(2.0, 1.25, 0.10);
+            // Cells much smaller than the radii: matches must still be found several cells away.
+            PoolingEngine pooling = new PoolingEngine(engine, shared, 0.001, 1.0, 1.0, 30.0, 3, 4, 60_000, () -> 0L);
+            Trip a = new Trip("Ann", "41.0,-87.0", "41.2,-87.0", 14.0, new SurgeFare(standard(), 2.0));
+            Trip b = new Trip("Ben", "41.004,-87.0", "41.204,-87.0", 14.0, standard());
+            Trip away = new Trip("Cat", "41.0,-87.0", "40.8,-87.0", 14.0, standard());
+            Trip c = new Trip("Dee", "41.0,-87.004", "41.2,-87.004", 14.0, standard());
+            for (Trip trip : List.of(a, b, away, c)) {
+                trip.request();
+            }
+            assertTrue(pooling.offer(a) == null && pooling.offer(b) == null, "Pool stays open until full");
+            assertTrue(pooling.offer(away) == null, "Opposite heading opens its own pool");
+            String driver = pooling.offer(c);
+            assertEquals("Kai", driver, "Full pool dispatched to the nearest driver");
+            for (Trip trip : List.of(a, b, c)) {
+                assertEquals("Kai", trip.getDriverName(), trip.getRiderName() + "'s driver");
+            }
+            assertTrue(away.getStatus() == TripStatus.REQUESTED, "Incompatible trip still waiting");
+            assertEquals(1, pooling.getWaitingTrips(), "Waiting trips");
+
+            Trip probe = new Trip("Probe", "A", "B", 14.0, standard());
+            a.start();
+            b.start();
+            assertEquals(shared.calculateFare(probe) * 2.0, a.complete(), "Surge kept on top of the shared fare");
+            assertEquals(shared.calculateFare(probe), b.complete(), "Shared fare");
+        });
+
+        check("Pooling: a pooled trip cancelled right after accept still frees the driver", () -> {
+            DriverIndex index = new DriverIndex(0.01, 8);
+            index.updatePosition("Kai", new GeoPoint(41.0, -87.0));
+            DispatchEngine engine = new DispatchEngine(index, grid(), 3);
+            PoolingEngine pooling = new PoolingEngine(engine, new SharedRideFare(2.0, 1.25, 0.10),
+                    0.01, 1.0, 1.0, 30.0, 2, 4, 60_000, () -> 0L);
+            Trip a = new Trip("Ann", "41.0,-87.0", "41.2,-87.0", 14.0, standard());
+            Trip b = new Trip("Ben", "41.001,-87.0", "41.201,-87.0", 14.0, standard());
+            a.request();
+            b.request();
+            a.addObserver(event -> {
+                if (event.getType() == TripEventType.ACCEPTED) {
+                    try {
+                        a.cancel();
+                    } catch (IllegalTransitionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            assertTrue(pooling.offer(a) == null, "First trip waits");
+            assertEquals("Kai", pooling.offer(b), "Pool dispatched");
+            assertTrue(a.getStatus() == TripStatus.CANCELLED, "First trip cancelled on accept");
+            assertTrue(!index.isAvailable("Kai"), "Driver held for the remaining rider");
+            b.start();
+            b.complete();
+            assertTrue(index.isAvailable("Kai"), "Driver released once the last rider is done");
+        });
+    }
+
+    // ============================================================
+    // Fare quotes (cache, surge version, interruption)
+    // ============================================================
+    private static void fareQuotes() {
+        check("Quotes: an Error while pricing does not strand later callers", () -> {
+            FareQuoteService quotes = new FareQuoteService(256, 60_000, () -> 1L, System::nanoTime);
+            AtomicInteger failuresLeft = new AtomicInteger(1);
+            FareStrategy flaky = new FareStrategy() {
+                @Override
+                public double calculateFare(Trip trip) {
+                    if (failuresLeft.getAndDecrement() > 0) {
+                        throw new StackOverflowError();
+                    }
+                    return 7.0;
+                }
+
+                @Override
+                public String name() {
+                    return "Flaky";
+                }
+            };
+            try {
+                quotes.quote("A", "B", 1.0, flaky);
+                throw new IllegalStateException("Expected the pricing error to escape");
+            } catch (StackOverflowError expected) {
+                // The owner sees the error; the entry must be gone.
+            }
+            assertEquals(0, quotes.size(), "Failed entry removed");
+            assertEquals(7.0, quotes.quote("A", "B", 1.0, flaky), "Next caller prices afresh");
+        });
+
+        check("Quotes: unusable distances are rejected, not cached", () -> {
+            FareQuoteService quotes = new FareQuoteService(256, 60_000, () -> 1L, System::nanoTime);
+            for (double distance : new double[] {Double.NaN, Double.POSITIVE_INFINITY, -1.0, 0.0}) {
+                try {
+                    quotes.quote("A", "B", distance, standard());
+                    throw new IllegalStateException("Distance " + distance + " was priced");
+                } catch (InvalidParameterException expected) {
+                    // rejected up front
+                }
+            }
+            assertEquals(0, quotes.size(), "Nothing cached");
+        });
+
+        check("Quotes: a repeated quote is a hit and matches the trip's fare", () -> {
+            FareQuoteService quotes = new FareQuoteService(256, 60_000, () -> 1L, System::nanoTime);
+            FareStrategy strategy = new SurgeFare(standard(), 1.5);
+            double first = quotes.quote("A", "B", 4.2, strategy);
+            double second = quotes.quote("A", "B", 4.2, strategy);
+            assertEquals(first, second, "Cached quote");
+            assertEquals(1L, quotes.getHits(), "Hits");
+            Trip trip = new Trip("Eve", "A", "B", 4.2, strategy);
+            assertEquals(strategy.calculateFare(trip), first, "Quote matches the trip's price");
+        });
+
+        check("Quotes: a quote priced across a surge version change is not cached", () -> {
+            AtomicInteger version = new AtomicInteger(1);
+            FareQuoteService quotes = new FareQuoteService(256, 60_000, version::get, System::nanoTime);
+            FareStrategy moving = new FareStrategy() {
+                @Override
+                public double calculateFare(Trip trip) {
+                    version.incrementAndGet();
+                    return 10.0;
+                }
+
+                @Override
+                public String name() {
+                    return "Moving";
+                }
+            };
+            assertEquals(10.0, quotes.quote("A", "B", 1.0, moving), "Quote returned");
+            assertEquals(0, quotes.size(), "Nothing cached under the stale version");
+        });
+
+        check("Quotes: interrupting a waiting caller raises InterruptedException", () -> {
+            CountDownLatch pricing = new CountDownLatch(1);
+            CountDownLatch finish = new CountDownLatch(1);
+            FareQuoteService quotes = new FareQuoteService(256, 60_000, () -> 1L, System::nanoTime);
+            FareStrategy slow = new FareStrategy() {
+                @Override
+                public double calculateFare(Trip trip) {
+                    pricing.countDown();
+                    try {
+                        finish.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return 5.0;
+                }
+
+                @Override
+                public String name() {
+                    return "Slow";
+                }
+            };
+            Thread owner = new Thread(() -> {
+                try {
+                    quotes.quote("A", "B", 1.0, slow);
+                } catch (Exception e) {
+                    // The waiter is what this check is about.
+                }
+            });
+            owner.start();
+            pricing.await();
+            List<Throwable> outcome = Collections.synchronizedList(new ArrayList<>());
+            Thread waiter = new Thread(() -> {
+                try {
+                    quotes.quote("A", "B", 1.0, slow);
+                } catch (Throwable t) {
+                    outcome.add(t);
+                }
+            });
+            waiter.start();
+            while (waiter.getState() != Thread.State.WAITING) {
+                Thread.onSpinWait();
+            }
+            waiter.interrupt();
+            waiter.join();
+            finish.countDown();
+            owner.join();
+            assertTrue(!outcome.isEmpty() && outcome.get(0) instanceof InterruptedException,
+                    "Waiter saw " + outcome);
+        });
+    }
+
+    // ============================================================
+    // Log formatting and the async appender
+    // ============================================================
+    private static void logText() {
+        check("LogText: money matches %.2f, including half cents and negative zero", () -> {
+            List<Double> amounts = new ArrayList<>(List.of(1.005, 2.675, 0.015, -0.004, -0.0, 0.0,
+                    -0.005, 99.995, 123.445, 1e12 + 0.005, Double.NaN, Double.NEGATIVE_INFINITY));
+            Random random = new Random(19);
+            for (int i = 0; i < 100_000; i++) {
+                amounts.add((random.nextInt(2_000_000) - 1_000_000) / 1000.0);
+            }
+            for (double amount : amounts) {
+                String expected = String.format("%.2f", amount);
+                assertEquals(expected, LogText.appendMoney(new StringBuilder(), amount).toString(),
+                        "Money for " + amount);
+            }
+        });
+
+        check("LogText: timestamps match Instant.toString", () -> {
+            long[] samples = {0L, 1L, 1_000L, 1_000_000L, -1L, 1_700_000_000_123_456_789L,
+                    Long.MAX_VALUE, Long.MIN_VALUE};
+            for (long nanos : samples) {
+                String expected = java.time.Instant.ofEpochSecond(0, nanos).toString();
+                assertEquals(expected, LogText.appendTimestamp(new StringBuilder(), nanos).toString(),
+                        "Timestamp for " + nanos);
+            }
+        });
+
+        check("LogText: JSON strings are escaped", () -> {
+            assertEquals("\"a\\\"b\\\\c\\n\\u0001\"",
+                    LogText.appendJsonString(new StringBuilder(), "a\"b\\c\n\u0001").toString(), "Escaped");
+            StringBuilder out = new StringBuilder("x:").append("q\"t");
+            assertEquals("x:q\\\"t", LogText.escapeJsonFrom(out, 2).toString(), "Escaped in place");
+        });
+
+        check("AsyncLogAppender: a line published after close is counted as dropped", () -> {
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+            AsyncLogAppender appender = new AsyncLogAppender(bytes, 4);
+            StringBuilder line = appender.claim();
+            appender.close();
+            appender.publish(line.append("late"));
+            assertEquals(1L, appender.getDroppedLines(), "Dropped after close");
+            assertEquals(0L, appender.getWrittenLines(), "Nothing written");
+            assertEquals(0, bytes.size(), "Stream untouched");
+        });
+
+        check("AsyncLogAppender: an idle writer parks until woken", () -> {
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+            try (AsyncLogAppender appender = new AsyncLogAppender(bytes, 4)) {
+                appender.publish(appender.claim().append("one"));
+                appender.flush();
+                Thread writer = Thread.getAllStackTraces().keySet().stream()
+                        .filter(t -> t.getName().equals("log-appender") && t.isAlive())
+                        .findFirst().orElseThrow();
+                long deadline = System.nanoTime() + 1_000_000_000L;
+                while (writer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+                assertEquals(Thread.State.WAITING, writer.getState(), "Idle writer state");
+                appender.publish(appender.claim().append("two"));
+                appender.flush();
+                assertEquals(2L, appender.getWrittenLines(), "Woken by publish");
+            }
+        });
+
+        check("AsyncLogAppender: flush returns once every published line is written", () -> {
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+            try (AsyncLogAppender appender = new AsyncLogAppender(bytes, 64)) {
+                int published = 0;
+                for (int i = 0; i < 1_000; i++) {
+                    StringBuilder line = appender.claim();
+                    if (line == null) {
+                        appender.flush();
+                        continue;
+                    }
+                    appender.publish(line.append("line ").append(i));
+                    published++;
+                }
+                appender.flush();
+                assertEquals((long) published, appender.getWrittenLines(), "Written after flush");
+                long lines = bytes.toString(java.nio.charset.StandardCharsets.UTF_8).lines().count();
+                assertEquals((long) published, lines, "Lines in the stream");
+            }
+        });
+    }
+
+    // ============================================================
+    // Trip metrics and the scrape endpoint
+    // ============================================================
+    private static void tripMetrics() {
+        check("Windows: events expire with their window and rates use the covered time", () -> {
+            long second = 1_000_000_000L;
+            java.util.concurrent.atomic.AtomicLong now = new java.util.concurrent.atomic.AtomicLong();
+            WindowedTripMetrics windows = new WindowedTripMetrics(now::get);
+            windows.onTripEvent(new TripEvent("t-1", TripEventType.REQUESTED, 0L, "Rae", null, null));
+            windows.onTripEvent(new TripEvent("t-1", TripEventType.COMPLETED, 0L, "Rae", "Ava", 12.0));
+
+            now.set(30 * second);
+            WindowSnapshot minute = windows.snapshot(MetricsWindow.ONE_MINUTE);
+            assertEquals(1L, minute.getCompleted(), "Completed in the last minute");
+            assertEquals(1.0 / 60, minute.getCompletionsPerSecond(), "One-minute rate");
+            WindowSnapshot five = windows.snapshot(MetricsWindow.FIVE_MINUTES);
+            assertEquals(4 * 60L + 31, five.getCoveredSeconds(), "Four full minutes and 31 s of the current one");
+            assertEquals(1.0 / (4 * 60 + 31), five.getCompletionsPerSecond(), "Five-minute rate");
+            assertEquals(12.0 * 60 / (4 * 60 + 31), five.getRevenuePerMinute(), "Revenue per minute");
+
+            now.set(61 * second);
+            assertEquals(0L, windows.snapshot(MetricsWindow.ONE_MINUTE).getRequested(), "Gone from one minute");
+            assertEquals(1L, windows.snapshot(MetricsWindow.FIVE_MINUTES).getRequested(), "Still in five minutes");
+
+            now.set(299 * second);
+            assertEquals(1L, windows.snapshot(MetricsWindow.FIVE_MINUTES).getRequested(), "Last second of five");
+            now.set(300 * second);
+            assertEquals(0L, windows.snapshot(MetricsWindow.FIVE_MINUTES).getRequested(), "Gone from five minutes");
+            assertEquals(1L, windows.snapshot(MetricsWindow.SIXTY_MINUTES).getRequested(), "Still in sixty");
+        });
+
+        check("Metrics: summary _sum is the exact total recorded", () -> {
+            TripMetrics metrics = new TripMetrics();
+            metrics.transitionCompleted(TripStatus.ACCEPTED, 1_000_003);
+            metrics.transitionCompleted(TripStatus.ACCEPTED, 77);
+            StringBuilder scrape = new StringBuilder();
+            metrics.appendScrape(scrape);
+            assertTrue(scrape.toString().contains("trip_transition_nanos_sum{status=\"ACCEPTED\"} 1000080\n"),
+                    "Exact sum in\n" + scrape);
+        });
+
+        check("Metrics: reset during recording leaves a consistent fresh set", () -> {
+            TripMetrics metrics = new TripMetrics();
+            FareStrategy strategy = standard();
+            race(4, () -> {
+                for (int i = 0; i < 20_000; i++) {
+                    metrics.fareCalculated(strategy, i);
+                    metrics.transitionRejected(TripStatus.REQUESTED, TripStatus.COMPLETED);
+                    if (i % 1000 == 0) {
+                        metrics.reset();
+                    }
+                }
+            });
+            metrics.reset();
+            assertEquals(0L, metrics.rejectedFrom(TripStatus.REQUESTED), "Rejections after reset");
+            assertTrue(metrics.getFareP99NanosByStrategy().isEmpty(), "No strategies after reset");
+            metrics.fareCalculated(strategy, 5);
+            assertTrue(metrics.getFareP99NanosByStrategy().containsKey(strategy.name()), "Recording resumes");
+        });
+
+        check("Metrics: the scrape server binds to loopback unless given an address", () -> {
+            try (MetricsHttpServer server = new MetricsHttpServer(new TripMetrics(), 0)) {
+                assertTrue(server.getAddress().isLoopbackAddress(), "Bound to " + server.getAddress());
+            }
+        });
+
+        expectThrows("Metrics: a null bind address is rejected", InvalidParameterException.class,
+                () -> new MetricsHttpServer(new TripMetrics(), null, 0));
+    }
+
+    // ============================================================
+    // Virtual-thread observer dispatch
+    // ============================================================
+    private static final class BlockingObserver implements IoBoundObserver {
+        private final CountDownLatch entered;
+        private final CountDownLatch release;
+
+        private BlockingObserver(CountDownLatch entered, CountDownLatch release) {
+            this.entered = entered;
+            this.release = release;
+        }
+
+        @Override
+        public void onTripEvent(TripEvent event) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void virtualThreadDispatch() {
+        TripEvent event = new TripEvent("trip-1", TripEventType.ACCEPTED, 0L, "Riley", "Ava", null);
+
+        check("VirtualThreads: notifiers block on I/O only when they push to a phone", () -> {
+            LogAppender discard = new LogAppender() {
+                @Override
+                public StringBuilder claim() {
+                    return null;
+                }
+
+                @Override
+                public void publish(StringBuilder line) {
+                }
+            };
+            assertTrue(!new RiderNotifier("Riley", discard, LogFormat.TEXT, new LogThrottle()).blocksOnIo(),
+                    "Logging rider notifier is inline");
+            assertTrue(!new DriverNotifier("Ava", discard, LogFormat.TEXT, new LogThrottle()).blocksOnIo(),
+                    "Logging driver notifier is inline");
+            assertTrue(new RiderNotifier("Riley", (to, message) -> { }).blocksOnIo(), "Pushing notifier blocks");
+            try (VirtualThreadDispatcher dispatcher = new VirtualThreadDispatcher(4, 5_000, 16, (o, e, t) -> { })) {
+                TripObserver driverApp = new DriverNotifier("Ava", discard, LogFormat.TEXT, new LogThrottle());
+                dispatcher.dispatch(event, List.of(driverApp));
+                assertEquals(0L, dispatcher.getCompleted(), "Nothing went to a virtual thread");
+            }
+        });
+
+        check("VirtualThreads: concurrency limits apply per observer instance", () -> {
+            CountDownLatch entered = new CountDownLatch(2);
+            CountDownLatch release = new CountDownLatch(1);
+            try (VirtualThreadDispatcher dispatcher = new VirtualThreadDispatcher(4, 5_000, 16, (o, e, t) -> { })) {
+                dispatcher.setConcurrencyLimit(BlockingObserver.class, 1);
+                dispatcher.dispatch(event, List.of(new BlockingObserver(entered, release),
+                        new BlockingObserver(entered, release)));
+                boolean both = entered.await(2, java.util.concurrent.TimeUnit.SECONDS);
+                release.countDown();
+                assertTrue(both, "Two instances of one class ran at once");
+            }
+        });
+
+        check("VirtualThreads: flush waits for every dispatched call", () -> {
+            CountDownLatch release = new CountDownLatch(1);
+            try (VirtualThreadDispatcher dispatcher = new VirtualThreadDispatcher(4, 5_000, 64, (o, e, t) -> { })) {
+                BlockingObserver observer = new BlockingObserver(new CountDownLatch(10), release);
+                for (int i = 0; i < 10; i++) {
+                    dispatcher.dispatch(event, List.of(observer));
+                }
+                Thread opener = new Thread(release::countDown);
+                opener.start();
+                dispatcher.flush();
+                assertEquals(0L, dispatcher.getInFlight(), "In flight after flush");
+                assertEquals(10L, dispatcher.getCompleted(), "Completed after flush");
+                opener.join();
+            }
+        });
+
+        check("VirtualThreads: dispatch racing close is either run or rejected, never stranded", () -> {
+            IoBoundObserver quick = e -> { };
+            for (int round = 0; round < 200; round++) {
+                VirtualThreadDispatcher dispatcher = new VirtualThreadDispatcher(4, 5_000, 1_000, (o, e, t) -> { });
+                CountDownLatch started = new CountDownLatch(1);
+                List<Throwable> thrown = Collections.synchronizedList(new ArrayList<>());
+                Thread publisher = new Thread(() -> {
+                    started.countDown();
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            dispatcher.dispatch(event, List.of(quick));
+                        }
+                    } catch (Throwable t) {
+                        thrown.add(t);
+                    }
+                });
+                publisher.start();
+                started.await();
+                dispatcher.close();
+                publisher.join();
+                assertTrue(thrown.isEmpty(), "Dispatch threw " + thrown);
+                assertEquals(0L, dispatcher.getInFlight(), "In flight after close");
+                assertEquals(200L, dispatcher.getCompleted() + dispatcher.getRejected(), "Every call accounted for");
+            }
+        });
+    }
+
+    // ============================================================
+    // Zone surge (open requests against available drivers)
+    // ============================================================
+    private static void surge() {
+        check("Surge: open requests against available drivers drive the multiplier and version", () -> {
+            TripRegistry registry = new TripRegistry(4);
+            DriverIndex drivers = new DriverIndex(0.01, 8);
+            drivers.updatePosition("Kai", new GeoPoint(41.5, -87.0));
+            drivers.updatePosition("Lou", new GeoPoint(40.5, -87.0));
+            SurgeEngine surge = new SurgeEngine(registry, location -> location,
+                    () -> drivers.availableByZone(p -> p.getLatitude() > 41 ? "north" : "south"), 0.0, 0.5, 3.0);
+            List<Trip> trips = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Trip trip = new Trip("R" + i, "north", "south", 3.0, standard());
+                registry.register(trip);
+                trip.addObserver(surge);
+                trip.request();
+                trips.add(trip);
+            }
+            SurgeSnapshot first = surge.recompute();
+            assertEquals(2.5, first.multiplierFor("north"), "Four open requests, one driver");
+            assertEquals(1.0, first.multiplierFor("south"), "Idle zone");
+            assertEquals(first.getVersion(), surge.recompute().getVersion(), "Unchanged multipliers keep the version");
+
+            trips.get(0).accept("Kai");
+            trips.get(0).cancel();
+            assertEquals(2.0, surge.recompute().multiplierFor("north"), "A cancel after accept is not counted twice");
+            trips.get(1).cancel();
+            SurgeSnapshot later = surge.recompute();
+            assertEquals(1.5, later.multiplierFor("north"), "Cancelling an open request drops demand");
+            assertTrue(later.getVersion() > first.getVersion(), "New multipliers, new version");
+
+            drivers.updatePosition("Mo", new GeoPoint(41.6, -87.0));
+            assertEquals(1.0, surge.recompute().multiplierFor("north"), "More drivers, no surge");
+
+            Trip stranger = new Trip("Zed", "north", "south", 3.0, standard());
+            stranger.addObserver(surge);
+            stranger.request();
+            assertEquals(1L, surge.getUnresolvedEvents(), "Unregistered trip counted, not bucketed");
+            assertTrue(!surge.recompute().getMultipliers().containsKey("unknown"), "No catch-all zone");
+        });
+    }
+
+    // ============================================================
+    // Revenue tracking
+    // ============================================================
+    private static void revenue() {
+        check("Revenue: concurrent completions add up in total, by strategy and by driver", () -> {
+            RevenueTracker tracker = new RevenueTracker();
+            int perThread = 10_000;
+            race(4, () -> {
+                for (int i = 0; i < perThread; i++) {
+                    String strategy = i % 2 == 0 ? "StandardFare" : "SurgeFare";
+                    tracker.onTripEvent(new TripEvent("t", TripEventType.COMPLETED, 0L, "Rae", "D" + (i % 5),
+                            1.25 + i % 3, strategy));
+                }
+                tracker.onTripEvent(new TripEvent("t", TripEventType.CANCELLED, 0L, "Rae", "D0", null));
+            });
+            long expectedCents = 0;
+            Map<String, Long> byDriver = new java.util.HashMap<>();
+            Map<String, Long> byStrategy = new java.util.HashMap<>();
+            for (int i = 0; i < perThread; i++) {
+                long cents = 125 + (i % 3) * 100L;
+                expectedCents += 4 * cents;
+                byDriver.merge("D" + (i % 5), 4 * cents, Long::sum);
+                byStrategy.merge(i % 2 == 0 ? "StandardFare" : "SurgeFare", 4 * cents, Long::sum);
+            }
+            assertEquals(expectedCents, tracker.getTotalRevenueCents(), "Total cents");
+            assertEquals(4 * perThread, tracker.getCompletedTrips(), "Completed trips");
+            for (Map.Entry<String, Long> entry : byDriver.entrySet()) {
+                assertEquals(entry.getValue() / 100.0, (double) tracker.getRevenueByDriver().get(entry.getKey()),
+                        "Revenue of " + entry.getKey());
+            }
+            for (Map.Entry<String, Long> entry : byStrategy.entrySet()) {
+                assertEquals(entry.getValue() / 100.0, (double) tracker.getRevenueByStrategy().get(entry.getKey()),
+                        "Revenue of " + entry.getKey());
+            }
+            assertEquals(Long.valueOf(2L * perThread), tracker.getCompletedTripsByStrategy().get("SurgeFare"),
+                    "Surge trips");
+        });
+    }
+
+    // ============================================================
+    // Time-ordered trip ids
+    // ============================================================
+    private static void tripIds() {
+        check("TripIds: unique across threads, ordered within a thread, and parse back", () -> {
+            TimeOrderedTripIdGenerator generator = new TimeOrderedTripIdGenerator(7);
+            Set<TripId> seen = ConcurrentHashMap.newKeySet();
+            AtomicInteger disorder = new AtomicInteger();
+            race(4, () -> {
+                TripId previous = null;
+                for (int i = 0; i < 20_000; i++) {
+                    TripId id = generator.next();
+                    seen.add(id);
+                    if (previous != null && previous.compareTo(id) >= 0) {
+                        disorder.incrementAndGet();
+                    }
+                    assertEquals(7L, id.getHigh() & 0xFFFF, "Node in the high word");
+                    assertEquals(id, TripId.parse(id.toString()), "Parse round trip");
+                    previous = id;
+                }
+            });
+            assertEquals(4 * 20_000, seen.size(), "Unique ids");
+            assertEquals(0, disorder.get(), "Ids out of order within a thread");
+
+            java.util.concurrent.atomic.AtomicLong clock = new java.util.concurrent.atomic.AtomicLong(1_000);
+            TimeOrderedTripIdGenerator timed = new TimeOrderedTripIdGenerator(1, clock::get);
+            TripId early = timed.next();
+            clock.set(2_000);
+            assertTrue(early.compareTo(timed.next()) < 0, "A later millisecond sorts later");
+        });
+    }
+
+    // ============================================================
+    // Stackless expected failures
+    // ============================================================
+    private static void stacklessExceptions() {
+        check("Exceptions: structured failures are stackless unless enabled, and carry their fields", () -> {
+            boolean traces = Boolean.getBoolean("rideshare.exceptions.stackTraces");
+            Trip trip = requestedTrip("Rae");
+            try {
+                trip.complete();
+                throw new IllegalStateException("Completing a requested trip succeeded");
+            } catch (IllegalTransitionException e) {
+                assertEquals(trip.getTripId(), e.getTripId(), "Trip id");
+                assertEquals(TripStatus.REQUESTED, e.getFromStatus(), "From status");
+                assertEquals(TripStatus.COMPLETED, e.getTargetStatus(), "Target status");
+                assertTrue(e.getMessage().contains("REQUESTED"), "Message built from the fields: " + e.getMessage());
+                assertEquals(traces, e.getStackTrace().length > 0, "Stack trace follows the flag");
+            }
+            assertEquals(traces, new InvalidParameterException("distance", "bad").getStackTrace().length > 0,
+                    "Named parameter failure follows the flag");
+            assertTrue(new IllegalTransitionException("free-form").getStackTrace().length > 0,
+                    "Message-only failures keep their stack");
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import exceptions.InvalidParameterException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import strategy.CompiledFare;
+import strategy.FareBatch;
+import strategy.FareCompiler;
+import strategy.FareStrategy;
+import strategy.StandardFare;
+import strategy.SurgeFare;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Columnar settlement pricing: compiled per-trip loop against the batch kernel and its
+ * fork-join variant. Forks enable the Vector API so the vectorized kernel is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class FareBatchBenchmark {
+    @Param({"1024", "1048576"})
+    public int size;
+
+    private FareStrategy surge;
+    private CompiledFare compiled;
+    private double[] distances;
+    private double[] out;
+
+    @Setup
+    public void setUp() throws InvalidParameterException {
+        surge = new SurgeFare(new SurgeFare(new StandardFare(2.50, 1.75), 1.80), 1.10);
+        compiled = (CompiledFare) FareCompiler.compile(surge);
+        distances = new double[size];
+        out = new double[size];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < size; i++) {
+            distances[i] = 0.5 + random.nextDouble() * 30.0;
+        }
+    }
+
+    @Benchmark
+    public double[] perTripLoop() throws InvalidParameterException {
+        for (int i = 0; i < size; i++) {
+            out[i] = compiled.calculateFare(distances[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] batch() throws InvalidParameterException {
+        surge.calculateFares(distances, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] batchParallel() throws InvalidParameterException {
+        FareBatch.calculateFaresParallel(surge, distances, out);
+        return out;
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import core.Trip;
+import exceptions.InvalidParameterException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import strategy.FareCompiler;
+import strategy.FareStrategy;
+import strategy.SharedRideFare;
+import strategy.StandardFare;
+import strategy.SurgeFare;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-trip cost of each FareStrategy, including SurgeFare stacked over nested bases.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FareStrategyBenchmark {
+    private Trip trip;
+    private FareStrategy standard;
+    private FareStrategy surge;
+    private FareStrategy surgeOfSurge;
+    private FareStrategy compiledSurgeOfSurge;
+    private FareStrategy surgeOfShared;
+    private FareStrategy shared;
+
+    @Setup
+    public void setUp() throws InvalidParameterException {
+        standard = new StandardFare(2.50, 1.75);
+        surge = new SurgeFare(standard, 1.80);
+        surgeOfSurge = new SurgeFare(new SurgeFare(surge, 1.25), 1.10);
+        compiledSurgeOfSurge = FareCompiler.compile(surgeOfSurge);
+        shared = new SharedRideFare(2.00, 1.25, 0.10);
+        surgeOfShared = new SurgeFare(shared, 1.50);
+        trip = new Trip("Riley", "A", "B", 10.0, standard);
+    }
+
+    @Benchmark
+    public double standardFare() throws InvalidParameterException {
+        return standard.calculateFare(trip);
+    }
+
+    @Benchmark
+    public double surgeFare() throws InvalidParameterException {
+        return surge.calculateFare(trip);
+    }
+
+    @Benchmark
+    public double nestedSurgeFare() throws InvalidParameterException {
+        return surgeOfSurge.calculateFare(trip);
+    }
+
+    @Benchmark
+    public double compiledNestedSurgeFare() throws InvalidParameterException {
+        return compiledSurgeOfSurge.calculateFare(trip);
+    }
+
+    @Benchmark
+    public double sharedRideFare() throws InvalidParameterException {
+        return shared.calculateFare(trip);
+    }
+
+    @Benchmark
+    public double surgeOverSharedFare() throws InvalidParameterException {
+        return surgeOfShared.calculateFare(trip);
+    }
+}
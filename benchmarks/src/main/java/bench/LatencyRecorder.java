@@ -0,0 +1,51 @@
+package bench;
+
+import metrics.LogLinearHistogram;
+
+/**
+ * Latency histograms for an open-loop run. Response time is measured from when an operation
+ * was scheduled to start, so time spent queued behind a slow predecessor is charged to the
+ * operations that waited (correcting coordinated omission); service time is measured from
+ * when it actually started, as a closed-loop tool would report it.
+ */
+final class LatencyRecorder {
+    // Up to 2^40 ns (about 18 minutes) is resolved.
+    private static final int NANOS_BITS = 40;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 0.9999};
+
+    private final LogLinearHistogram response = new LogLinearHistogram(NANOS_BITS);
+    private final LogLinearHistogram service = new LogLinearHistogram(NANOS_BITS);
+
+    void record(long intendedNanos, long startedNanos, long finishedNanos) {
+        response.record(finishedNanos - intendedNanos);
+        service.record(finishedNanos - startedNanos);
+    }
+
+    String report() {
+        return "  response time (corrected): " + percentiles(response) + "\n"
+                + "  service time (uncorrected): " + percentiles(service);
+    }
+
+    private static String percentiles(LogLinearHistogram histogram) {
+        long[] counts = histogram.newCounts();
+        histogram.addTo(counts);
+        StringBuilder out = new StringBuilder();
+        for (double q : QUANTILES) {
+            if (out.length() > 0) {
+                out.append("  ");
+            }
+            out.append('p').append(label(q)).append('=')
+                    .append(micros(LogLinearHistogram.valueAtQuantile(counts, q)));
+        }
+        return out.toString();
+    }
+
+    private static String label(double q) {
+        String digits = Double.toString(q * 100);
+        return digits.endsWith(".0") ? digits.substring(0, digits.length() - 2) : digits;
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1fus", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,262 @@
+package bench;
+
+import core.Trip;
+import core.TripEvent;
+import exceptions.IllegalTransitionException;
+import exceptions.InvalidParameterException;
+import journal.FsyncPolicy;
+import journal.JournalRecovery;
+import journal.TripJournal;
+import logging.AsyncLogAppender;
+import logging.LogFormat;
+import logging.LogThrottle;
+import observer.DriverNotifier;
+import observer.EventDispatcher;
+import observer.RevenueTracker;
+import observer.RiderNotifier;
+import observer.TripLogger;
+import observer.TripObserver;
+import strategy.FareStrategy;
+import strategy.SharedRideFare;
+import strategy.StandardFare;
+import strategy.SurgeFare;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop workload driver. Trips arrive on a fixed schedule at the target rate, spread over
+ * worker threads, and each runs request, accept, start and then complete (or cancel) with a
+ * realistic observer set: a shared TripLogger and RevenueTracker plus per-trip rider and
+ * driver notifiers, all logging through one async appender. A worker that falls behind still
+ * charges each trip from its scheduled arrival, so reported percentiles include queueing.
+ * <p>
+ * With {@code --replay} it instead feeds a recorded journal through the same observers,
+ * either as fast as possible or paced at the recorded timing scaled by {@code --speed}.
+ * <pre>
+ * java -cp target/benchmarks.jar bench.LoadGenerator --rate 50000 --seconds 30 --threads 4 --record /tmp/trips
+ * java -cp target/benchmarks.jar bench.LoadGenerator --replay /tmp/trips --speed 10
+ * </pre>
+ * Other options: {@code --warmup} seconds excluded from the report, {@code --riders},
+ * {@code --drivers}, {@code --locations}, {@code --cancel-ratio}, {@code --observers} (any of
+ * logger,revenue,notifiers or none) and {@code --log FILE}.
+ */
+public final class LoadGenerator {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long SPIN_THRESHOLD_NANOS = 100_000;
+
+    private final Map<String, String> options;
+    private final AtomicLong failures = new AtomicLong();
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        LoadGenerator generator = new LoadGenerator(options);
+        if (options.containsKey("replay")) {
+            generator.replay(Path.of(options.get("replay")));
+        } else {
+            generator.run();
+        }
+    }
+
+    private void run() throws Exception {
+        double rate = doubleOption("rate", 10_000);
+        long seconds = longOption("seconds", 10);
+        long warmupSeconds = longOption("warmup", 2);
+        int threads = (int) longOption("threads", Runtime.getRuntime().availableProcessors());
+        String[] riders = names("rider", (int) longOption("riders", 10_000));
+        String[] drivers = names("driver", (int) longOption("drivers", 2_000));
+        String[] locations = names("location", (int) longOption("locations", 500));
+        double cancelRatio = doubleOption("cancel-ratio", 0.05);
+        String observerSet = options.getOrDefault("observers", "logger,revenue,notifiers");
+        boolean notifiers = observerSet.contains("notifiers");
+
+        FareStrategy standard = new StandardFare(2.50, 1.75);
+        FareStrategy[] strategies = {standard, new SurgeFare(standard, 1.80), new SharedRideFare(2.00, 1.25, 0.10)};
+
+        try (OutputStream logOut = logStream();
+             AsyncLogAppender appender = new AsyncLogAppender(logOut, 64 * 1024);
+             TripJournal journal = journal()) {
+            RevenueTracker revenue = new RevenueTracker();
+            List<TripObserver> shared = new ArrayList<>();
+            if (observerSet.contains("logger")) {
+                shared.add(new TripLogger(appender, LogFormat.TEXT, new LogThrottle()));
+            }
+            if (observerSet.contains("revenue")) {
+                shared.add(revenue);
+            }
+            if (journal != null) {
+                shared.add(journal);
+            }
+
+            long periodNanos = Math.max(1, (long) (NANOS_PER_SECOND / rate));
+            long warmupArrivals = (long) (rate * warmupSeconds);
+            long arrivals = warmupArrivals + (long) (rate * seconds);
+            LatencyRecorder latencies = new LatencyRecorder();
+            long start = System.nanoTime() + 10_000_000; // let every worker reach the starting line
+            long measureFrom = start + warmupArrivals * periodNanos;
+            List<Thread> workers = new ArrayList<>();
+            for (int w = 0; w < threads; w++) {
+                int worker = w;
+                Thread thread = new Thread(() -> {
+                    SplittableRandom random = new SplittableRandom(worker * 0x9E3779B97F4A7C15L + 1);
+                    for (long i = worker; i < arrivals; i += threads) {
+                        long intended = start + i * periodNanos;
+                        awaitNanos(intended);
+                        long started = System.nanoTime();
+                        try {
+                            runTrip(random, riders, drivers, locations, strategies, cancelRatio, shared,
+                                    notifiers ? appender : null);
+                        } catch (InvalidParameterException | IllegalTransitionException | RuntimeException e) {
+                            failures.incrementAndGet();
+                        }
+                        if (i >= warmupArrivals) {
+                            latencies.record(intended, started, System.nanoTime());
+                        }
+                    }
+                }, "load-" + w);
+                workers.add(thread);
+                thread.start();
+            }
+            for (Thread thread : workers) {
+                thread.join();
+            }
+            double elapsed = (System.nanoTime() - measureFrom) / (double) NANOS_PER_SECOND;
+            appender.flush();
+
+            long measured = arrivals - warmupArrivals;
+            System.out.printf("trips: %d in %.2fs = %.0f trips/s (target %.0f/s, %d threads, %ds warmup)%n",
+                    measured, elapsed, measured / elapsed, rate, threads, warmupSeconds);
+            System.out.println(latencies.report());
+            System.out.printf("failures: %d  completed: %d  revenue: $%.2f  log lines dropped: %d%n",
+                    failures.get(), revenue.getCompletedTrips(), revenue.getTotalRevenue(), appender.getDroppedLines());
+        }
+    }
+
+    private static void runTrip(SplittableRandom random, String[] riders, String[] drivers, String[] locations,
+                                FareStrategy[] strategies, double cancelRatio, List<TripObserver> shared,
+                                AsyncLogAppender notifierLog)
+            throws InvalidParameterException, IllegalTransitionException {
+        String rider = riders[random.nextInt(riders.length)];
+        int pickup = random.nextInt(locations.length);
+        int dropoff = (pickup + 1 + random.nextInt(locations.length - 1)) % locations.length;
+        Trip trip = new Trip(rider, locations[pickup], locations[dropoff], 0.5 + random.nextDouble() * 20,
+                strategies[random.nextInt(strategies.length)]);
+        for (TripObserver observer : shared) {
+            trip.addObserver(observer);
+        }
+        if (notifierLog != null) {
+            trip.addObserver(new RiderNotifier(rider, notifierLog, LogFormat.TEXT, new LogThrottle()));
+        }
+        trip.request();
+        String driver = drivers[random.nextInt(drivers.length)];
+        trip.accept(driver);
+        if (notifierLog != null) {
+            trip.addObserver(new DriverNotifier(driver, notifierLog, LogFormat.TEXT, new LogThrottle()));
+        }
+        if (random.nextDouble() < cancelRatio) {
+            trip.cancel();
+            return;
+        }
+        trip.start();
+        trip.complete();
+    }
+
+    private void replay(Path directory) throws Exception {
+        double speed = doubleOption("speed", 0);
+        try (OutputStream logOut = logStream();
+             AsyncLogAppender appender = new AsyncLogAppender(logOut, 64 * 1024)) {
+            RevenueTracker revenue = new RevenueTracker();
+            List<TripObserver> observers = List.of(new TripLogger(appender, LogFormat.TEXT, new LogThrottle()), revenue);
+            LatencyRecorder latencies = new LatencyRecorder();
+            long[] firstEventNanos = {Long.MIN_VALUE};
+            long start = System.nanoTime();
+            long replayed = JournalRecovery.replay(directory, event -> {
+                long intended = System.nanoTime();
+                if (speed > 0) {
+                    if (firstEventNanos[0] == Long.MIN_VALUE) {
+                        firstEventNanos[0] = event.getEpochNanos();
+                    }
+                    intended = start + (long) ((event.getEpochNanos() - firstEventNanos[0]) / speed);
+                    awaitNanos(intended);
+                }
+                long started = System.nanoTime();
+                deliver(event, observers);
+                latencies.record(intended, started, System.nanoTime());
+            });
+            double elapsed = (System.nanoTime() - start) / (double) NANOS_PER_SECOND;
+            appender.flush();
+
+            System.out.printf("replayed %d events in %.2fs = %.0f events/s (%s)%n", replayed, elapsed,
+                    replayed / elapsed, speed > 0 ? speed + "x recorded pace" : "unpaced");
+            System.out.println(latencies.report());
+            System.out.printf("failures: %d  completed: %d  revenue: $%.2f%n",
+                    failures.get(), revenue.getCompletedTrips(), revenue.getTotalRevenue());
+        }
+    }
+
+    private void deliver(TripEvent event, List<TripObserver> observers) {
+        try {
+            EventDispatcher.SYNCHRONOUS.dispatch(event, observers);
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    private static void awaitNanos(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private OutputStream logStream() throws IOException {
+        String path = options.get("log");
+        return path == null ? OutputStream.nullOutputStream() : new FileOutputStream(path);
+    }
+
+    private TripJournal journal() throws IOException, InvalidParameterException {
+        String path = options.get("record");
+        return path == null ? null : new TripJournal(Path.of(path), 64 * 1024 * 1024, FsyncPolicy.GROUP_COMMIT, 10);
+    }
+
+    private static String[] names(String prefix, int count) {
+        String[] names = new String[Math.max(2, count)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = prefix + "-" + i;
+        }
+        return names;
+    }
+
+    private long longOption(String name, long defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import core.Trip;
+import observer.ObserverFailureHandler;
+import observer.RiderNotifier;
+import observer.StubPhoneGateway;
+import observer.VirtualThreadDispatcher;
+import strategy.FareStrategy;
+import strategy.StandardFare;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Requests 100k trips whose rider notifiers push through a stub gateway with seconds of
+ * latency, dispatched by a VirtualThreadDispatcher. Shows the transitioning thread is never
+ * held up, how many pushes were in flight at once, and how few platform threads that took.
+ * Run with: java -cp target/benchmarks.jar bench.NotificationFanOutDemo
+ */
+public final class NotificationFanOutDemo {
+    private static final int TRIPS = 100_000;
+    private static final long LATENCY_MILLIS = 2_000;
+    private static final long JITTER_MILLIS = 500;
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private NotificationFanOutDemo() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        StubPhoneGateway gateway = new StubPhoneGateway(LATENCY_MILLIS, JITTER_MILLIS, 0.001);
+        LongAdder reported = new LongAdder();
+        ObserverFailureHandler onFailure = (observer, event, cause) -> reported.increment();
+        FareStrategy standard = new StandardFare(2.50, 1.75);
+
+        try (VirtualThreadDispatcher dispatcher = new VirtualThreadDispatcher(TRIPS, TIMEOUT_MILLIS, TRIPS * 2, onFailure)) {
+            long started = System.nanoTime();
+            for (int i = 0; i < TRIPS; i++) {
+                Trip trip = new Trip("rider-" + i, "DePaul Loop", "Wrigley Field", 5.2, standard);
+                trip.setEventDispatcher(dispatcher);
+                trip.addObserver(new RiderNotifier(trip.getRiderName(), gateway));
+                trip.request();
+            }
+            long requestedMillis = (System.nanoTime() - started) / 1_000_000;
+            int platformThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+            long inFlight = dispatcher.getInFlight();
+
+            dispatcher.flush();
+            long drainedMillis = (System.nanoTime() - started) / 1_000_000;
+
+            System.out.println("requested " + TRIPS + " trips in " + requestedMillis + " ms; "
+                    + inFlight + " pushes in flight, " + platformThreads + " live platform threads");
+            System.out.println("peak pushes in flight: " + gateway.getPeakInFlight()
+                    + ", all drained after " + drainedMillis + " ms (gateway latency "
+                    + LATENCY_MILLIS + "+" + JITTER_MILLIS + " ms)");
+            System.out.println("delivered " + gateway.getDelivered() + ", failures " + dispatcher.getFailures()
+                    + " (timeouts " + dispatcher.getTimeouts() + ", rejected " + dispatcher.getRejected()
+                    + "), reported to handler " + reported.sum());
+        }
+    }
+}
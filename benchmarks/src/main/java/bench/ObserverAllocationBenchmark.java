@@ -0,0 +1,80 @@
+package bench;
+
+import core.TripEvent;
+import core.TripEventType;
+import observer.EventDispatcher;
+import observer.ObserverList;
+import observer.TripObserver;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures heap bytes allocated per notified event on the steady-state path:
+ * the old per-event ArrayList snapshot against the copy-on-write ObserverList.
+ * Run with: java -cp target/benchmarks.jar bench.ObserverAllocationBenchmark
+ */
+public final class ObserverAllocationBenchmark {
+    private static final int WARMUP = 2_000_000;
+    private static final int EVENTS = 5_000_000;
+    private static final int[] OBSERVER_COUNTS = {1, 10, 100};
+
+    private static final class CountingObserver implements TripObserver {
+        private long count;
+
+        @Override
+        public void onTripEvent(TripEvent event) {
+            count++;
+        }
+    }
+
+    private ObserverAllocationBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        TripEvent event = new TripEvent("bench-trip", TripEventType.STARTED,
+                "2024-01-01T00:00:00Z", "Rider", "Driver", null);
+
+        for (int observerCount : OBSERVER_COUNTS) {
+            ObserverList cow = new ObserverList();
+            List<TripObserver> legacy = new ArrayList<>();
+            for (int i = 0; i < observerCount; i++) {
+                CountingObserver observer = new CountingObserver();
+                cow.add(observer);
+                legacy.add(observer);
+            }
+
+            runCopying(legacy, event, WARMUP);
+            long before = threads.getCurrentThreadAllocatedBytes();
+            runCopying(legacy, event, EVENTS);
+            double copyingBytes = (threads.getCurrentThreadAllocatedBytes() - before) / (double) EVENTS;
+
+            runCopyOnWrite(cow, event, WARMUP);
+            before = threads.getCurrentThreadAllocatedBytes();
+            runCopyOnWrite(cow, event, EVENTS);
+            double cowBytes = (threads.getCurrentThreadAllocatedBytes() - before) / (double) EVENTS;
+
+            System.out.println("observers=" + observerCount
+                    + "  ArrayList snapshot: " + String.format("%.1f", copyingBytes) + " B/event"
+                    + "  ObserverList: " + String.format("%.1f", cowBytes) + " B/event");
+        }
+    }
+
+    private static void runCopying(List<TripObserver> observers, TripEvent event, int events) {
+        for (int i = 0; i < events; i++) {
+            List<TripObserver> snapshot = new ArrayList<>(observers);
+            for (TripObserver observer : snapshot) {
+                observer.onTripEvent(event);
+            }
+        }
+    }
+
+    private static void runCopyOnWrite(ObserverList observers, TripEvent event, int events) {
+        for (int i = 0; i < events; i++) {
+            EventDispatcher.SYNCHRONOUS.dispatch(event, observers.snapshot());
+        }
+    }
+}
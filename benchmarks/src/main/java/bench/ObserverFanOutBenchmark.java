@@ -0,0 +1,89 @@
+package bench;
+
+import core.Trip;
+import core.TripEvent;
+import core.TripEventType;
+import exceptions.IllegalTransitionException;
+import exceptions.InvalidParameterException;
+import observer.EventDispatcher;
+import observer.ObserverList;
+import observer.TripObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import strategy.FareStrategy;
+import strategy.StandardFare;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Observer notification cost with 0/1/10/100 attached observers, both in isolation
+ * (one event through the dispatcher) and across a full trip lifecycle (four events).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObserverFanOutBenchmark {
+    @Param({"0", "1", "10", "100"})
+    public int observerCount;
+
+    private FareStrategy standard;
+    private TripObserver[] observers;
+    private ObserverList observerList;
+    private TripEvent event;
+
+    private static final class SinkObserver implements TripObserver {
+        private final Blackhole blackhole;
+
+        private SinkObserver(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onTripEvent(TripEvent event) {
+            blackhole.consume(event);
+        }
+    }
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws InvalidParameterException {
+        standard = new StandardFare(2.50, 1.75);
+        observers = new TripObserver[observerCount];
+        observerList = new ObserverList();
+        for (int i = 0; i < observerCount; i++) {
+            observers[i] = new SinkObserver(blackhole);
+            observerList.add(observers[i]);
+        }
+        event = new TripEvent("bench-trip", TripEventType.STARTED,
+                "2024-01-01T00:00:00Z", "Riley", "Ava", null);
+    }
+
+    @Benchmark
+    public void notifyOnce() {
+        EventDispatcher.SYNCHRONOUS.dispatch(event, observerList.snapshot());
+    }
+
+    @Benchmark
+    public double lifecycleWithObservers() throws InvalidParameterException, IllegalTransitionException {
+        Trip trip = new Trip("Riley", "DePaul Loop", "Wrigley Field", 5.2, standard);
+        for (TripObserver observer : observers) {
+            trip.addObserver(observer);
+        }
+        trip.request();
+        trip.accept("Ava");
+        trip.start();
+        return trip.complete();
+    }
+}
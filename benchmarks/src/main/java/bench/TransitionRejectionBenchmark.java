@@ -0,0 +1,73 @@
+package bench;
+
+import core.Trip;
+import core.TripStatus;
+import exceptions.IllegalTransitionException;
+import exceptions.InvalidParameterException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import strategy.FareStrategy;
+import strategy.StandardFare;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A rejected transition (accepting or completing an already completed trip) against an
+ * accepted one on a fresh trip. Add {@code -jvmArgs -Drideshare.exceptions.stackTraces=true}
+ * to see what the rejections cost with stack traces filled in.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransitionRejectionBenchmark {
+    private FareStrategy standard;
+    private Trip completed;
+
+    @Setup
+    public void setUp() throws InvalidParameterException, IllegalTransitionException {
+        standard = new StandardFare(2.50, 1.75);
+        completed = new Trip("Riley", "DePaul Loop", "Wrigley Field", 5.2, standard);
+        completed.request();
+        completed.accept("Ava");
+        completed.start();
+        completed.complete();
+    }
+
+    @Benchmark
+    public TripStatus rejectedAccept() throws InvalidParameterException {
+        try {
+            completed.accept("Noah");
+            return null;
+        } catch (IllegalTransitionException e) {
+            return e.getFromStatus();
+        }
+    }
+
+    @Benchmark
+    public TripStatus rejectedComplete() throws InvalidParameterException {
+        try {
+            completed.complete();
+            return null;
+        } catch (IllegalTransitionException e) {
+            return e.getFromStatus();
+        }
+    }
+
+    @Benchmark
+    public TripStatus acceptedRequest() throws InvalidParameterException, IllegalTransitionException {
+        Trip trip = new Trip("Riley", "DePaul Loop", "Wrigley Field", 5.2, standard);
+        trip.request();
+        return trip.getStatus();
+    }
+}
@@ -0,0 +1,55 @@
+package bench;
+
+import core.RandomTripIdGenerator;
+import core.Trip;
+import core.TripIdGenerator;
+import exceptions.InvalidParameterException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import strategy.FareStrategy;
+import strategy.StandardFare;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of creating a Trip: argument validation plus trip id generation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TripConstructionBenchmark {
+    private FareStrategy standard;
+    private TripIdGenerator randomIds;
+
+    @Setup
+    public void setUp() throws InvalidParameterException {
+        standard = new StandardFare(2.50, 1.75);
+        randomIds = new RandomTripIdGenerator();
+    }
+
+    @Benchmark
+    public Trip construct() throws InvalidParameterException {
+        return new Trip("Riley", "DePaul Loop", "Wrigley Field", 5.2, standard);
+    }
+
+    @Benchmark
+    public Trip constructWithRandomIds() throws InvalidParameterException {
+        return new Trip("Riley", "DePaul Loop", "Wrigley Field", 5.2, standard, randomIds);
+    }
+
+    @Benchmark
+    public String constructAndFormatId() throws InvalidParameterException {
+        return new Trip("Riley", "DePaul Loop", "Wrigley Field", 5.2, standard).getTripId();
+    }
+}
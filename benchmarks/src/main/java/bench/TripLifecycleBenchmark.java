@@ -0,0 +1,46 @@
+package bench;
+
+import core.Trip;
+import exceptions.IllegalTransitionException;
+import exceptions.InvalidParameterException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import strategy.FareStrategy;
+import strategy.StandardFare;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full request -> accept -> start -> complete lifecycle of a fresh trip with no observers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TripLifecycleBenchmark {
+    private FareStrategy standard;
+
+    @Setup
+    public void setUp() throws InvalidParameterException {
+        standard = new StandardFare(2.50, 1.75);
+    }
+
+    @Benchmark
+    public double lifecycle() throws InvalidParameterException, IllegalTransitionException {
+        Trip trip = new Trip("Riley", "DePaul Loop", "Wrigley Field", 5.2, standard);
+        trip.request();
+        trip.accept("Ava");
+        trip.start();
+        return trip.complete();
+    }
+}
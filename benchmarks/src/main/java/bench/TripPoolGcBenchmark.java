@@ -0,0 +1,138 @@
+package bench;
+
+import core.Trip;
+import core.TripEvent;
+import core.TripPool;
+import exceptions.IllegalTransitionException;
+import exceptions.InvalidParameterException;
+import observer.ObserverList;
+import observer.TripObserver;
+import strategy.FareStrategy;
+import strategy.StandardFare;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Runs full request-accept-start-complete lifecycles with fresh trips and with a TripPool,
+ * reporting heap bytes allocated per lifecycle and the collections and GC time each run caused.
+ * Use a small young generation to make the difference visible, for example:
+ * java -Xmx256m -Xmn16m -cp target/benchmarks.jar bench.TripPoolGcBenchmark
+ */
+public final class TripPoolGcBenchmark {
+    private static final int WARMUP = 1_000_000;
+    private static final int LIFECYCLES = 10_000_000;
+    private static final int OBSERVERS = 3;
+
+    private static final class CountingObserver implements TripObserver {
+        private long count;
+
+        @Override
+        public void onTripEvent(TripEvent event) {
+            count++;
+        }
+    }
+
+    private TripPoolGcBenchmark() {
+    }
+
+    public static void main(String[] args) throws InvalidParameterException, IllegalTransitionException {
+        FareStrategy standard = new StandardFare(2.50, 1.75);
+        TripObserver[] observers = new TripObserver[OBSERVERS];
+        ObserverList shared = new ObserverList();
+        for (int i = 0; i < OBSERVERS; i++) {
+            observers[i] = new CountingObserver();
+            shared.add(observers[i]);
+        }
+        TripPool pool = new TripPool(shared, 64);
+
+        runFresh(standard, observers, WARMUP);
+        runPooled(pool, standard, WARMUP);
+
+        Sample fresh = new Sample();
+        runFresh(standard, observers, LIFECYCLES);
+        fresh.stop();
+
+        Sample pooled = new Sample();
+        runPooled(pool, standard, LIFECYCLES);
+        pooled.stop();
+
+        System.out.println("fresh trips:  " + fresh);
+        System.out.println("pooled trips: " + pooled + "  (created " + pool.getCreated()
+                + ", reused " + pool.getReused() + ")");
+    }
+
+    private static void runFresh(FareStrategy strategy, TripObserver[] observers, int lifecycles)
+            throws InvalidParameterException, IllegalTransitionException {
+        for (int i = 0; i < lifecycles; i++) {
+            Trip trip = new Trip("Riley", "DePaul Loop", "Wrigley Field", 5.2, strategy);
+            for (TripObserver observer : observers) {
+                trip.addObserver(observer);
+            }
+            drive(trip);
+        }
+    }
+
+    private static void runPooled(TripPool pool, FareStrategy strategy, int lifecycles)
+            throws InvalidParameterException, IllegalTransitionException {
+        for (int i = 0; i < lifecycles; i++) {
+            Trip trip = pool.acquire("Riley", "DePaul Loop", "Wrigley Field", 5.2, strategy);
+            drive(trip);
+            pool.release(trip);
+        }
+    }
+
+    private static void drive(Trip trip) throws InvalidParameterException, IllegalTransitionException {
+        trip.request();
+        trip.accept("Jordan");
+        trip.start();
+        trip.complete();
+    }
+
+    private static final class Sample {
+        private final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final long startBytes = threads.getCurrentThreadAllocatedBytes();
+        private final long startCollections = collections();
+        private final long startGcMillis = gcMillis();
+        private final long startNanos = System.nanoTime();
+        private long bytes;
+        private long count;
+        private long gcMs;
+        private long elapsedMs;
+
+        private void stop() {
+            elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+            bytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+            count = collections() - startCollections;
+            gcMs = gcMillis() - startGcMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f B/lifecycle, %d collections, %d ms in GC, %d ms total",
+                    bytes / (double) LIFECYCLES, count, gcMs, elapsedMs);
+        }
+
+        private static long collections() {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : collectors()) {
+                total += Math.max(0, gc.getCollectionCount());
+            }
+            return total;
+        }
+
+        private static long gcMillis() {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : collectors()) {
+                total += Math.max(0, gc.getCollectionTime());
+            }
+            return total;
+        }
+
+        private static List<GarbageCollectorMXBean> collectors() {
+            return ManagementFactory.getGarbageCollectorMXBeans();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package command;
+
+/**
+ * Outcome of one {@link TripCommand}. Only {@code APPLIED} commands are remembered in the
+ * idempotency window; every other outcome leaves the key free so the client may retry.
+ */
+public enum CommandResult {
+    APPLIED, DUPLICATE, UNKNOWN_TRIP, ILLEGAL_TRANSITION, FAILED
+}
@@ -0,0 +1,85 @@
+package command;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded set of recently applied idempotency keys, split into independently locked shards.
+ * Each shard forgets its oldest applied key once full, so a retry arriving after roughly
+ * {@code capacity} newer commands is no longer recognised. Keys of commands still running are
+ * held apart and never evicted, so a retry cannot slip in while the original is in flight.
+ */
+final class IdempotencyWindow {
+    private final Shard[] shards;
+    private final int mask;
+
+    private static final class Shard {
+        private final Map<String, Boolean> applied;
+        private final Set<String> pending = new HashSet<>();
+
+        private Shard(int capacity) {
+            this.applied = new LinkedHashMap<>(Math.min(capacity, 1 << 16) * 4 / 3 + 1) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+
+    IdempotencyWindow(int capacity, int shardCount) {
+        int size = 1;
+        while (size < shardCount) {
+            size <<= 1;
+        }
+        int perShard = Math.max(1, capacity / size);
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard(perShard);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Claims {@code key} for a command about to run. Returns false if the key was already
+     * applied or is being applied by another thread.
+     */
+    boolean reserve(String key) {
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            return !shard.applied.containsKey(key) && shard.pending.add(key);
+        }
+    }
+
+    void applied(String key) {
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            shard.pending.remove(key);
+            shard.applied.put(key, Boolean.TRUE);
+        }
+    }
+
+    void release(String key) {
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            shard.pending.remove(key);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.applied.size() + shard.pending.size();
+            }
+        }
+        return size;
+    }
+
+    private Shard shardFor(String key) {
+        int h = key.hashCode();
+        return shards[(h ^ (h >>> 16)) & mask];
+    }
+}
@@ -0,0 +1,55 @@
+package command;
+
+import exceptions.InvalidParameterException;
+
+/**
+ * A request to move one trip through one transition, tagged with a client-chosen
+ * idempotency key. Retries of the same command must reuse the key.
+ */
+public final class TripCommand {
+    private final String tripId;
+    private final TripTransition transition;
+    private final String driverName;
+    private final String idempotencyKey;
+
+    public TripCommand(String tripId, TripTransition transition, String idempotencyKey)
+            throws InvalidParameterException {
+        this(tripId, transition, null, idempotencyKey);
+    }
+
+    public TripCommand(String tripId, TripTransition transition, String driverName, String idempotencyKey)
+            throws InvalidParameterException {
+        if (tripId == null || tripId.isBlank()) {
+            throw new InvalidParameterException("Trip ID cannot be null or blank");
+        }
+        if (transition == null) {
+            throw new InvalidParameterException("Transition cannot be null");
+        }
+        if (transition == TripTransition.ACCEPT && (driverName == null || driverName.isBlank())) {
+            throw new InvalidParameterException("Driver name cannot be null or blank");
+        }
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            throw new InvalidParameterException("Idempotency key cannot be null or blank");
+        }
+        this.tripId = tripId;
+        this.transition = transition;
+        this.driverName = driverName;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getTripId() {
+        return tripId;
+    }
+
+    public TripTransition getTransition() {
+        return transition;
+    }
+
+    public String getDriverName() {
+        return driverName;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+}
@@ -0,0 +1,108 @@
+package command;
+
+import core.Trip;
+import core.TripId;
+import core.TripRegistry;
+import exceptions.InvalidParameterException;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies batches of {@link TripCommand}s to trips in a {@link TripRegistry} and reports a
+ * {@link CommandResult} per command instead of throwing.
+ * <p>
+ * A command whose idempotency key was applied within the window is answered with
+ * {@code DUPLICATE} and not run again, so client retries are safe. Commands go through
+ * {@link Trip#tryTransition}, so stale and losing transitions stay off the exception path and
+ * {@code APPLIED} means this command's own move took effect, not a concurrent one's.
+ */
+public class TripCommandProcessor {
+    private final TripRegistry registry;
+    private final IdempotencyWindow window;
+    private final LongAdder[] counts = new LongAdder[CommandResult.values().length];
+
+    public TripCommandProcessor(TripRegistry registry, int windowSize) throws InvalidParameterException {
+        if (registry == null) {
+            throw new InvalidParameterException("Registry cannot be null");
+        }
+        if (windowSize <= 0) {
+            throw new InvalidParameterException("Idempotency window size must be greater than 0");
+        }
+        this.registry = registry;
+        this.window = new IdempotencyWindow(windowSize, Runtime.getRuntime().availableProcessors() * 4);
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Applies {@code batch} in order; {@code results[i]} is the outcome of {@code batch.get(i)}.
+     */
+    public CommandResult[] apply(List<TripCommand> batch) {
+        CommandResult[] results = new CommandResult[batch.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = apply(batch.get(i));
+        }
+        return results;
+    }
+
+    public CommandResult apply(TripCommand command) {
+        CommandResult result = execute(command);
+        counts[result.ordinal()].increment();
+        return result;
+    }
+
+    public long getCount(CommandResult result) {
+        return counts[result.ordinal()].sum();
+    }
+
+    public int getWindowOccupancy() {
+        return window.size();
+    }
+
+    private CommandResult execute(TripCommand command) {
+        String key = command.getIdempotencyKey();
+        if (!window.reserve(key)) {
+            return CommandResult.DUPLICATE;
+        }
+        CommandResult result = null;
+        try {
+            result = run(command);
+            return result;
+        } finally {
+            // An unexpected throw must not leave the key pending, or every retry is a duplicate.
+            if (result == CommandResult.APPLIED) {
+                window.applied(key);
+            } else {
+                window.release(key);
+            }
+        }
+    }
+
+    private CommandResult run(TripCommand command) {
+        TripId id;
+        try {
+            id = TripId.parse(command.getTripId());
+        } catch (IllegalArgumentException e) {
+            return CommandResult.UNKNOWN_TRIP;
+        }
+        Trip trip = registry.get(id);
+        if (trip == null) {
+            return CommandResult.UNKNOWN_TRIP;
+        }
+        switch (trip.tryTransition(id, command.getTransition().target(), command.getDriverName())) {
+            case MOVED:
+            case MOVED_OBSERVER_FAILED:
+                // Observers run after the state moves, so a failing one does not undo the transition.
+                return CommandResult.APPLIED;
+            case ILLEGAL:
+                return CommandResult.ILLEGAL_TRANSITION;
+            case STALE:
+                return CommandResult.UNKNOWN_TRIP;
+            default:
+                // INVALID cannot happen: TripCommand already rejects a missing target or driver.
+                return CommandResult.FAILED;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package command;
+
+import core.TripStatus;
+
+public enum TripTransition {
+    REQUEST(TripStatus.REQUESTED),
+    ACCEPT(TripStatus.ACCEPTED),
+    START(TripStatus.STARTED),
+    COMPLETE(TripStatus.COMPLETED),
+    CANCEL(TripStatus.CANCELLED);
+
+    private final TripStatus target;
+
+    TripTransition(TripStatus target) {
+        this.target = target;
+    }
+
+    public TripStatus target() {
+        return target;
+    }
+}
@@ -0,0 +1,78 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns rider, driver and strategy names to dense int ids so encoded events carry four
+ * bytes per name instead of a string. Lookups of known names are lock-free; only new names
+ * lock.
+ * <p>
+ * The dictionary lives in memory only. Ids are assigned 0, 1, 2, ... in first-seen order, so
+ * a reader elsewhere can rebuild it by replaying the new names in that order through
+ * {@link #define}.
+ */
+public final class NameDictionary {
+    public static final int NO_NAME = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size;
+
+    public int idOf(String name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : intern(name);
+    }
+
+    public String nameOf(int id) {
+        if (id == NO_NAME) {
+            return null;
+        }
+        String[] current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Unknown name id: " + id);
+        }
+        return current[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Adds a name shipped from another dictionary under the id it had there.
+     *
+     * @throws IllegalArgumentException unless {@code id} is the next id to assign and the name
+     *         is new
+     */
+    public synchronized void define(int id, String name) {
+        if (name == null || id != size || ids.containsKey(name)) {
+            throw new IllegalArgumentException("Name id " + id + " is out of order or already defined");
+        }
+        add(name);
+    }
+
+    private synchronized int intern(String name) {
+        Integer existing = ids.get(name);
+        return existing != null ? existing : add(name);
+    }
+
+    // Caller holds the lock.
+    private int add(String name) {
+        int id = size;
+        String[] current = names;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[id] = name;
+        // Publish the array before the id so readers never see an id they cannot resolve.
+        names = current;
+        ids.put(name, id);
+        size++;
+        return id;
+    }
+}
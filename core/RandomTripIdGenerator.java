@@ -0,0 +1,15 @@
+package core;
+
+import java.util.UUID;
+
+/**
+ * Random (version 4) UUIDs, as trips were identified originally. Draws from SecureRandom.
+ */
+public final class RandomTripIdGenerator implements TripIdGenerator {
+
+    @Override
+    public TripId next() {
+        UUID uuid = UUID.randomUUID();
+        return new TripId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+}
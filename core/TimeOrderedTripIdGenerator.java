@@ -0,0 +1,59 @@
+package core;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered, node-scoped 128-bit ids without a shared hot spot.
+ * <p>
+ * The high word is {@code epochMillis << 16 | node}, so ids sort by creation time and never
+ * collide across nodes. The low word is a per-node sequence handed to each thread in blocks
+ * of {@value #BLOCK}; a thread touches the shared counter once per block and otherwise only
+ * its own thread-local cursor. The sequence starts at a random offset so a restarted node does
+ * not reuse low words within the same millisecond.
+ */
+public final class TimeOrderedTripIdGenerator implements TripIdGenerator {
+    public static final TimeOrderedTripIdGenerator DEFAULT =
+            new TimeOrderedTripIdGenerator(Integer.getInteger("rideshare.node", 0), System::currentTimeMillis);
+
+    private static final int BLOCK = 4096;
+    private static final int MAX_NODE = 0xFFFF;
+
+    private static final class Cursor {
+        private long next;
+        private long limit;
+    }
+
+    private final long node;
+    private final LongSupplier clockMillis;
+    private final AtomicLong sequence;
+    private final ThreadLocal<Cursor> cursors = ThreadLocal.withInitial(Cursor::new);
+
+    public TimeOrderedTripIdGenerator(int node) {
+        this(node, System::currentTimeMillis);
+    }
+
+    public TimeOrderedTripIdGenerator(int node, LongSupplier clockMillis) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+        this.clockMillis = clockMillis;
+        this.sequence = new AtomicLong(new SplittableRandom().nextLong() & (Long.MAX_VALUE >>> 8));
+    }
+
+    @Override
+    public TripId next() {
+        Cursor cursor = cursors.get();
+        if (cursor.next == cursor.limit) {
+            cursor.next = sequence.getAndAdd(BLOCK);
+            cursor.limit = cursor.next + BLOCK;
+        }
+        return new TripId(clockMillis.getAsLong() << 16 | node, cursor.next++);
+    }
+
+    public int getNode() {
+        return (int) node;
+    }
+}
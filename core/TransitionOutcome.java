@@ -0,0 +1,19 @@
+package core;
+
+/**
+ * Result of {@link Trip#tryTransition}, which reports instead of throwing.
+ */
+public enum TransitionOutcome {
+    /** This call made the move and every observer was notified. */
+    MOVED,
+    /** This call made the move, but an observer threw while being notified. */
+    MOVED_OBSERVER_FAILED,
+    /** The move is not legal from the trip's current status; nothing changed. */
+    ILLEGAL,
+    /** The trip object now holds a different ride (it was reused by a {@link TripPool}). */
+    STALE,
+    /** A required argument, such as the driver name for ACCEPTED, was missing. */
+    INVALID,
+    /** The fare strategy threw while pricing a completion; nothing changed. */
+    PRICING_FAILED
+}
@@ -2,29 +2,100 @@ package core;
 
 import exceptions.IllegalTransitionException;
 import exceptions.InvalidParameterException;
+import observer.EventDispatcher;
+import observer.ObserverList;
 import observer.TripObserver;
 import strategy.FareStrategy;
 
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Trip {
-    private final String tripId;
-    private final String riderName;
-    private final String pickupLocation;
-    private final String dropoffLocation;
-    private final double distanceMiles;
-    private TripStatus status;
-    private FareStrategy fareStrategy;
-    private String driverName;
-    private Double lastFare;
-    private final List<TripObserver> observers;
+    private final AtomicReference<State> state;
+    private volatile FareStrategy fareStrategy;
+    private final TripPool pool;
+    private final AtomicBoolean parked = new AtomicBoolean();
+    private volatile TripRegistry registry;
+    private final ObserverList sharedObservers;
+    private volatile ObserverList observers;
+    private volatile EventDispatcher eventDispatcher = EventDispatcher.SYNCHRONOUS;
+
+    private static volatile TripProbe probe;
+
+    // Who rides where. Immutable: a pooled trip gets a new Ride when reused, published with
+    // its fresh State, so a reader never sees one ride's id next to another's rider.
+    private static final class Ride {
+        private final TripId tripId;
+        private final String riderName;
+        private final String pickupLocation;
+        private final String dropoffLocation;
+        private final double distanceMiles;
+
+        private Ride(TripId tripId, String riderName, String pickupLocation, String dropoffLocation,
+                     double distanceMiles) {
+            this.tripId = tripId;
+            this.riderName = riderName;
+            this.pickupLocation = pickupLocation;
+            this.dropoffLocation = dropoffLocation;
+            this.distanceMiles = distanceMiles;
+        }
+    }
+
+    // Status, driver and fare are swapped together so every transition is a single CAS. The
+    // sequence counts moves, so events of racing transitions can be put back in order.
+    private static final class State {
+        private final Ride ride;
+        private final TripStatus status;
+        private final String driverName;
+        private final boolean hasFare;
+        private final double lastFare;
+        private final long sequence;
+
+        private State(Ride ride, TripStatus status, String driverName, boolean hasFare, double lastFare,
+                      long sequence) {
+            this.ride = ride;
+            this.status = status;
+            this.driverName = driverName;
+            this.hasFare = hasFare;
+            this.lastFare = lastFare;
+            this.sequence = sequence;
+        }
+
+        private static State initial(Ride ride) {
+            return new State(ride, TripStatus.CREATED, null, false, 0.0, 0);
+        }
+    }
 
     public Trip(String riderName, String pickupLocation, String dropoffLocation,
                 double distanceMiles, FareStrategy fareStrategy)
             throws InvalidParameterException {
+        this(riderName, pickupLocation, dropoffLocation, distanceMiles, fareStrategy,
+                TimeOrderedTripIdGenerator.DEFAULT);
+    }
+
+    public Trip(String riderName, String pickupLocation, String dropoffLocation,
+                double distanceMiles, FareStrategy fareStrategy, TripIdGenerator idGenerator)
+            throws InvalidParameterException {
+        this(riderName, pickupLocation, dropoffLocation, distanceMiles, fareStrategy, idGenerator, null);
+    }
+
+    Trip(String riderName, String pickupLocation, String dropoffLocation,
+         double distanceMiles, FareStrategy fareStrategy, TripIdGenerator idGenerator, TripPool pool)
+            throws InvalidParameterException {
+        validate(riderName, pickupLocation, dropoffLocation, distanceMiles, fareStrategy);
+        if (idGenerator == null) {
+            throw new InvalidParameterException("Trip id generator cannot be null");
+        }
+        this.fareStrategy = fareStrategy;
+        this.state = new AtomicReference<>(State.initial(
+                new Ride(idGenerator.next(), riderName, pickupLocation, dropoffLocation, distanceMiles)));
+        this.pool = pool;
+        this.sharedObservers = pool != null ? pool.getObservers() : null;
+    }
+
+    static void validate(String riderName, String pickupLocation, String dropoffLocation,
+                         double distanceMiles, FareStrategy fareStrategy) throws InvalidParameterException {
         if (riderName == null || riderName.isBlank()) {
             throw new InvalidParameterException("Rider name cannot be null or blank");
         }
@@ -40,40 +111,71 @@ public class Trip {
         if (fareStrategy == null) {
             throw new InvalidParameterException("Fare strategy cannot be null");
         }
-        this.tripId = UUID.randomUUID().toString();
-        this.riderName = riderName;
-        this.pickupLocation = pickupLocation;
-        this.dropoffLocation = dropoffLocation;
-        this.distanceMiles = distanceMiles;
+    }
+
+    // Called by TripPool on a parked terminal trip it owns, already dropped from its registry;
+    // arguments are already validated. The old ride's terminal state accepts no moves, so nothing
+    // can CAS past this swap, and readers see either the old ride or the new one whole.
+    void recycle(TripId tripId, String riderName, String pickupLocation, String dropoffLocation,
+                 double distanceMiles, FareStrategy fareStrategy) {
         this.fareStrategy = fareStrategy;
-        this.status = TripStatus.CREATED;
-        this.driverName = null;
-        this.lastFare = null;
-        this.observers = new ArrayList<>();
+        this.observers = null;
+        this.eventDispatcher = EventDispatcher.SYNCHRONOUS;
+        this.state.set(State.initial(new Ride(tripId, riderName, pickupLocation, dropoffLocation, distanceMiles)));
+        this.parked.set(false);
+    }
+
+    TripPool getPool() {
+        return pool;
+    }
+
+    TripRegistry getRegistry() {
+        return registry;
+    }
+
+    // Set by TripRegistry while it holds this trip's lock.
+    void setRegistry(TripRegistry registry) {
+        this.registry = registry;
+    }
+
+    // False if the trip is already sitting in a free list, so a double release cannot hand it out twice.
+    boolean park() {
+        return parked.compareAndSet(false, true);
     }
 
     public String getTripId() {
-        return tripId;
+        return state.get().ride.tripId.toString();
+    }
+
+    public TripId getId() {
+        return state.get().ride.tripId;
     }
 
     public String getRiderName() {
-        return riderName;
+        return state.get().ride.riderName;
     }
 
     public String getPickupLocation() {
-        return pickupLocation;
+        return state.get().ride.pickupLocation;
     }
 
     public String getDropoffLocation() {
-        return dropoffLocation;
+        return state.get().ride.dropoffLocation;
     }
 
     public double getDistanceMiles() {
-        return distanceMiles;
+        return state.get().ride.distanceMiles;
     }
 
     public TripStatus getStatus() {
-        return status;
+        return state.get().status;
+    }
+
+    /**
+     * Number of transitions this trip has made; the sequence of its latest event.
+     */
+    public long getSequence() {
+        return state.get().sequence;
     }
 
     public FareStrategy getFareStrategy() {
@@ -81,11 +183,20 @@ public class Trip {
     }
 
     public String getDriverName() {
-        return driverName;
+        return state.get().driverName;
     }
 
     public Double getLastFare() {
-        return lastFare;
+        State current = state.get();
+        return current.hasFare ? current.lastFare : null;
+    }
+
+    public boolean hasLastFare() {
+        return state.get().hasFare;
+    }
+
+    public double getLastFareAmount() {
+        return state.get().lastFare;
     }
 
     public void setFareStrategy(FareStrategy fareStrategy) throws InvalidParameterException {
@@ -95,71 +206,303 @@ public class Trip {
         this.fareStrategy = fareStrategy;
     }
 
+    public EventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
+    public void setEventDispatcher(EventDispatcher eventDispatcher) throws InvalidParameterException {
+        if (eventDispatcher == null) {
+            throw new InvalidParameterException("Event dispatcher cannot be null");
+        }
+        this.eventDispatcher = eventDispatcher;
+    }
+
+    /**
+     * Installs {@code probe} for every trip, or removes the current one when null.
+     */
+    public static void setProbe(TripProbe probe) {
+        Trip.probe = probe;
+    }
+
+    public static TripProbe getProbe() {
+        return probe;
+    }
+
+    /**
+     * Adds an observer to this trip only. Observers common to every trip of a {@link TripPool}
+     * belong in the pool's shared set instead; the per-trip set is created on first use.
+     */
     public void addObserver(TripObserver observer) {
-        observers.add(observer);
+        ObserverList list = observers;
+        if (list == null) {
+            synchronized (this) {
+                list = observers;
+                if (list == null) {
+                    list = new ObserverList();
+                    observers = list;
+                }
+            }
+        }
+        list.add(observer);
     }
 
     public void removeObserver(TripObserver observer) {
-        observers.remove(observer);
+        ObserverList list = observers;
+        if (list != null) {
+            list.remove(observer);
+        }
     }
 
     public void request() throws IllegalTransitionException {
-        if (status != TripStatus.CREATED) {
-            throw new IllegalTransitionException("Cannot request trip from status: " + status);
+        request(state.get().ride);
+    }
+
+    /**
+     * Like {@link #request()}, but fails if this trip no longer carries ride {@code expected}.
+     */
+    public void request(TripId expected) throws IllegalTransitionException {
+        request(ride(expected, "request"));
+    }
+
+    private void request(Ride ride) throws IllegalTransitionException {
+        TripProbe p = probe;
+        long started = p != null ? System.nanoTime() : 0;
+        State next = transition(ride, TripStatus.REQUESTED, "request", null, false, 0.0);
+        notifyObservers(event(next, TripEventType.REQUESTED, fareStrategy));
+        if (p != null) {
+            p.transitionCompleted(TripStatus.REQUESTED, System.nanoTime() - started);
         }
-        status = TripStatus.REQUESTED;
-        notifyObservers(new TripEvent(tripId, TripEventType.REQUESTED,
-                Instant.now().toString(), riderName, driverName, null));
     }
 
     public void accept(String driverName) throws IllegalTransitionException, InvalidParameterException {
-        if (status != TripStatus.REQUESTED) {
-            throw new IllegalTransitionException("Cannot accept trip from status: " + status);
+        accept(state.get().ride, driverName);
+    }
+
+    /**
+     * Like {@link #accept(String)}, but fails if this trip no longer carries ride {@code expected}.
+     */
+    public void accept(TripId expected, String driverName)
+            throws IllegalTransitionException, InvalidParameterException {
+        accept(ride(expected, "accept"), driverName);
+    }
+
+    private void accept(Ride ride, String driverName) throws IllegalTransitionException, InvalidParameterException {
+        TripProbe p = probe;
+        long started = p != null ? System.nanoTime() : 0;
+        State current = current(ride, "accept");
+        if (!current.status.canTransitionTo(TripStatus.ACCEPTED)) {
+            throw illegal("accept", current, TripStatus.ACCEPTED);
         }
         if (driverName == null || driverName.isBlank()) {
-            throw new InvalidParameterException("Driver name cannot be null or blank");
+            throw new InvalidParameterException("driverName", "Driver name cannot be null or blank");
+        }
+        State next = transition(ride, TripStatus.ACCEPTED, "accept", driverName, false, 0.0);
+        notifyObservers(event(next, TripEventType.ACCEPTED, fareStrategy));
+        if (p != null) {
+            p.transitionCompleted(TripStatus.ACCEPTED, System.nanoTime() - started);
         }
-        this.driverName = driverName;
-        status = TripStatus.ACCEPTED;
-        notifyObservers(new TripEvent(tripId, TripEventType.ACCEPTED,
-                Instant.now().toString(), riderName, driverName, null));
     }
 
     public void start() throws IllegalTransitionException {
-        if (status != TripStatus.ACCEPTED) {
-            throw new IllegalTransitionException("Cannot start trip from status: " + status);
+        start(state.get().ride);
+    }
+
+    /**
+     * Like {@link #start()}, but fails if this trip no longer carries ride {@code expected}.
+     */
+    public void start(TripId expected) throws IllegalTransitionException {
+        start(ride(expected, "start"));
+    }
+
+    private void start(Ride ride) throws IllegalTransitionException {
+        TripProbe p = probe;
+        long started = p != null ? System.nanoTime() : 0;
+        State next = transition(ride, TripStatus.STARTED, "start", null, false, 0.0);
+        notifyObservers(event(next, TripEventType.STARTED, fareStrategy));
+        if (p != null) {
+            p.transitionCompleted(TripStatus.STARTED, System.nanoTime() - started);
         }
-        status = TripStatus.STARTED;
-        notifyObservers(new TripEvent(tripId, TripEventType.STARTED,
-                Instant.now().toString(), riderName, driverName, null));
     }
 
     public double complete() throws IllegalTransitionException, InvalidParameterException {
-        if (status != TripStatus.STARTED) {
-            throw new IllegalTransitionException("Cannot complete trip from status: " + status);
-        }
-        double fare = fareStrategy.calculateFare(this);
-        this.lastFare = fare;
-        status = TripStatus.COMPLETED;
-        notifyObservers(new TripEvent(tripId, TripEventType.COMPLETED,
-                Instant.now().toString(), riderName, driverName, fare));
+        return complete(state.get().ride);
+    }
+
+    /**
+     * Like {@link #complete()}, but fails if this trip no longer carries ride {@code expected}.
+     */
+    public double complete(TripId expected) throws IllegalTransitionException, InvalidParameterException {
+        return complete(ride(expected, "complete"));
+    }
+
+    private double complete(Ride ride) throws IllegalTransitionException, InvalidParameterException {
+        TripProbe p = probe;
+        long started = p != null ? System.nanoTime() : 0;
+        State current = current(ride, "complete");
+        if (!current.status.canTransitionTo(TripStatus.COMPLETED)) {
+            throw illegal("complete", current, TripStatus.COMPLETED);
+        }
+        FareStrategy strategy = fareStrategy;
+        long pricing = p != null ? System.nanoTime() : 0;
+        double fare = strategy.calculateFare(this);
+        if (p != null) {
+            p.fareCalculated(strategy, System.nanoTime() - pricing);
+        }
+        State next = transition(ride, TripStatus.COMPLETED, "complete", null, true, fare);
+        notifyObservers(event(next, TripEventType.COMPLETED, strategy));
+        if (p != null) {
+            p.transitionCompleted(TripStatus.COMPLETED, System.nanoTime() - started);
+        }
         return fare;
     }
 
     public void cancel() throws IllegalTransitionException {
-        if (status != TripStatus.CREATED && status != TripStatus.REQUESTED
-                && status != TripStatus.ACCEPTED) {
-            throw new IllegalTransitionException("Cannot cancel trip from status: " + status);
+        cancel(state.get().ride);
+    }
+
+    /**
+     * Like {@link #cancel()}, but fails if this trip no longer carries ride {@code expected}.
+     */
+    public void cancel(TripId expected) throws IllegalTransitionException {
+        cancel(ride(expected, "cancel"));
+    }
+
+    private void cancel(Ride ride) throws IllegalTransitionException {
+        TripProbe p = probe;
+        long started = p != null ? System.nanoTime() : 0;
+        State next = transition(ride, TripStatus.CANCELLED, "cancel", null, false, 0.0);
+        notifyObservers(event(next, TripEventType.CANCELLED, fareStrategy));
+        if (p != null) {
+            p.transitionCompleted(TripStatus.CANCELLED, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Moves ride {@code expected} to {@code target} and reports what happened instead of throwing.
+     * Unlike the named transitions, the outcome says whether this call's move won: a concurrent
+     * caller that got there first yields ILLEGAL here, and a holder whose trip was reused by a
+     * {@link TripPool} yields STALE rather than moving the new ride.
+     *
+     * @param driverName required when {@code target} is ACCEPTED, ignored otherwise
+     */
+    public TransitionOutcome tryTransition(TripId expected, TripStatus target, String driverName) {
+        TripProbe p = probe;
+        long started = p != null ? System.nanoTime() : 0;
+        boolean accepting = target == TripStatus.ACCEPTED;
+        if (target == null || accepting && (driverName == null || driverName.isBlank())) {
+            return TransitionOutcome.INVALID;
+        }
+        FareStrategy strategy = null;
+        double fare = 0.0;
+        while (true) {
+            State current = state.get();
+            if (!current.ride.tripId.equals(expected)) {
+                return TransitionOutcome.STALE;
+            }
+            if (!current.status.canTransitionTo(target)) {
+                if (p != null) {
+                    p.transitionRejected(current.status, target);
+                }
+                return TransitionOutcome.ILLEGAL;
+            }
+            if (target == TripStatus.COMPLETED && strategy == null) {
+                strategy = fareStrategy;
+                try {
+                    long pricing = p != null ? System.nanoTime() : 0;
+                    fare = strategy.calculateFare(this);
+                    if (p != null) {
+                        p.fareCalculated(strategy, System.nanoTime() - pricing);
+                    }
+                } catch (InvalidParameterException | RuntimeException e) {
+                    return TransitionOutcome.PRICING_FAILED;
+                }
+                continue;
+            }
+            boolean priced = strategy != null;
+            State next = new State(current.ride, target, accepting ? driverName : current.driverName,
+                    priced || current.hasFare, priced ? fare : current.lastFare, current.sequence + 1);
+            if (state.compareAndSet(current, next)) {
+                try {
+                    notifyObservers(event(next, TripEventType.valueOf(target.name()),
+                            priced ? strategy : fareStrategy));
+                } catch (RuntimeException e) {
+                    return TransitionOutcome.MOVED_OBSERVER_FAILED;
+                }
+                if (p != null) {
+                    p.transitionCompleted(target, System.nanoTime() - started);
+                }
+                return TransitionOutcome.MOVED;
+            }
+        }
+    }
+
+    // Every event names the strategy in effect, so a checkpoint of a live trip knows how it will be priced.
+    private TripEvent event(State state, TripEventType type, FareStrategy strategy) {
+        return new TripEvent(state.ride.tripId, state.sequence, type, TripEvent.toEpochNanos(Instant.now()),
+                state.ride.riderName, state.driverName, state.hasFare, state.lastFare, strategy.name());
+    }
+
+    // Lock-free: a racer that loses the CAS re-reads the state and fails if the move is no longer legal.
+    // The move is pinned to the ride the caller read first, so a call overlapping a pool reuse
+    // fails instead of moving the new ride (a fare priced for the old one would land on it).
+    private State transition(Ride ride, TripStatus target, String action, String driverName, boolean priced,
+                             double fare) throws IllegalTransitionException {
+        while (true) {
+            State current = state.get();
+            if (current.ride != ride) {
+                throw reused(action, ride.tripId, current);
+            }
+            if (!current.status.canTransitionTo(target)) {
+                throw illegal(action, current, target);
+            }
+            State next = new State(current.ride, target,
+                    driverName != null ? driverName : current.driverName,
+                    priced || current.hasFare, priced ? fare : current.lastFare, current.sequence + 1);
+            if (state.compareAndSet(current, next)) {
+                return next;
+            }
         }
-        status = TripStatus.CANCELLED;
-        notifyObservers(new TripEvent(tripId, TripEventType.CANCELLED,
-                Instant.now().toString(), riderName, driverName, null));
+    }
+
+    private Ride ride(TripId expected, String action) throws IllegalTransitionException {
+        State current = state.get();
+        if (!current.ride.tripId.equals(expected)) {
+            throw reused(action, expected, current);
+        }
+        return current.ride;
+    }
+
+    private State current(Ride ride, String action) throws IllegalTransitionException {
+        State current = state.get();
+        if (current.ride != ride) {
+            throw reused(action, ride.tripId, current);
+        }
+        return current;
+    }
+
+    // Rare misuse rather than a lost race, so it keeps the stack trace of the stale holder.
+    private static IllegalTransitionException reused(String action, TripId tripId, State current) {
+        return new IllegalTransitionException("Cannot " + action + " trip " + tripId
+                + ": this trip now carries " + current.ride.tripId);
+    }
+
+    // Stackless and formatted on demand, so a rejected transition costs about as much as an accepted one.
+    private IllegalTransitionException illegal(String action, State current, TripStatus target) {
+        TripProbe p = probe;
+        if (p != null) {
+            p.transitionRejected(current.status, target);
+        }
+        return new IllegalTransitionException(current.ride.tripId.toString(), action, current.status, target);
     }
 
     private void notifyObservers(TripEvent event) {
-        List<TripObserver> snapshot = new ArrayList<>(observers);
-        for (TripObserver observer : snapshot) {
-            observer.onTripEvent(event);
+        EventDispatcher dispatcher = eventDispatcher;
+        if (sharedObservers != null) {
+            dispatcher.dispatch(event, sharedObservers.snapshot());
+        }
+        ObserverList own = observers;
+        if (own != null) {
+            dispatcher.dispatch(event, own.snapshot());
         }
     }
 }
@@ -1,33 +1,125 @@
 package core;
 
+import java.time.Instant;
+
 public class TripEvent {
-    private final String tripId;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long UNPARSED = Long.MIN_VALUE;
+
+    private final TripId id;
+    private String tripId;
     private final TripEventType type;
-    private final String timestamp;
+    private final long epochNanos;
     private final String riderName;
     private final String driverName;
-    private final Double fare;
+    private final double fare;
+    private final boolean hasFare;
+    private final String fareStrategyName;
+    private final long sequence;
+    private String timestamp;
 
+    // The string is kept as given and only parsed if someone asks for epoch nanos.
     public TripEvent(String tripId, TripEventType type, String timestamp,
                      String riderName, String driverName, Double fare) {
+        this(tripId, type, UNPARSED, riderName, driverName, fare);
+        this.timestamp = timestamp;
+    }
+
+    public TripEvent(String tripId, TripEventType type, long epochNanos,
+                     String riderName, String driverName, Double fare) {
+        this(tripId, type, epochNanos, riderName, driverName, fare, null);
+    }
+
+    public TripEvent(String tripId, TripEventType type, long epochNanos,
+                     String riderName, String driverName, Double fare, String fareStrategyName) {
+        this((TripId) null, type, epochNanos, riderName, driverName, fare, fareStrategyName);
         this.tripId = tripId;
+    }
+
+    public TripEvent(TripId id, TripEventType type, long epochNanos,
+                     String riderName, String driverName, Double fare) {
+        this(id, type, epochNanos, riderName, driverName, fare, null);
+    }
+
+    public TripEvent(TripId id, TripEventType type, long epochNanos,
+                     String riderName, String driverName, Double fare, String fareStrategyName) {
+        this(id, 0, type, epochNanos, riderName, driverName, fare != null, fare != null ? fare : 0.0, fareStrategyName);
+    }
+
+    // Priced events from a Trip pass the fare unboxed.
+    public TripEvent(TripId id, TripEventType type, long epochNanos,
+                     String riderName, String driverName, double fare, String fareStrategyName) {
+        this(id, 0, type, epochNanos, riderName, driverName, true, fare, fareStrategyName);
+    }
+
+    /**
+     * @param sequence position of this move in the trip's history, starting at 1; 0 when unknown
+     */
+    public TripEvent(TripId id, long sequence, TripEventType type, long epochNanos, String riderName,
+                     String driverName, boolean hasFare, double fare, String fareStrategyName) {
+        this.id = id;
+        this.sequence = sequence;
         this.type = type;
-        this.timestamp = timestamp;
+        this.epochNanos = epochNanos;
         this.riderName = riderName;
         this.driverName = driverName;
+        this.hasFare = hasFare;
         this.fare = fare;
+        this.fareStrategyName = fareStrategyName;
+    }
+
+    public static long toEpochNanos(Instant instant) {
+        return instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano();
     }
 
+    // Events raised by a Trip carry its TripId; the string form is built only if someone reads it.
     public String getTripId() {
-        return tripId;
+        String text = tripId;
+        if (text == null && id != null) {
+            text = id.toString();
+            tripId = text;
+        }
+        return text;
+    }
+
+    /**
+     * The binary trip id, or null for events built from a string id.
+     */
+    public TripId getId() {
+        return id;
+    }
+
+    /**
+     * Position of this event in its trip's history: 1 for the first move, then one more per
+     * move. Observers may receive a trip's events out of order when transitions race, so
+     * consumers that rebuild state should keep the highest sequence they have seen. 0 for
+     * events built without one.
+     */
+    public long getSequence() {
+        return sequence;
     }
 
     public TripEventType getType() {
         return type;
     }
 
+    // ISO-8601 form, formatted on first use; the event itself only carries epoch nanos.
     public String getTimestamp() {
-        return timestamp;
+        String formatted = timestamp;
+        if (formatted == null && epochNanos != UNPARSED) {
+            formatted = Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                    Math.floorMod(epochNanos, NANOS_PER_SECOND)).toString();
+            timestamp = formatted;
+        }
+        return formatted;
+    }
+
+    /**
+     * @throws java.time.format.DateTimeParseException for an event built from a timestamp
+     *         string that is not ISO-8601
+     */
+    public long getEpochNanos() {
+        return epochNanos != UNPARSED ? epochNanos : toEpochNanos(Instant.parse(timestamp));
     }
 
     public String getRiderName() {
@@ -39,6 +131,20 @@ public class TripEvent {
     }
 
     public Double getFare() {
+        return hasFare ? fare : null;
+    }
+
+    // Name of the trip's fare strategy: the one in effect when the event was raised, and on
+    // COMPLETED the one that priced it. Null for events built without one.
+    public String getFareStrategyName() {
+        return fareStrategyName;
+    }
+
+    public boolean hasFare() {
+        return hasFare;
+    }
+
+    public double getFareAmount() {
         return fare;
     }
 }
@@ -0,0 +1,70 @@
+package core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes trip events into the {@link TripEventFlyweight} layout and back. Trip ids are
+ * packed into two longs: taken straight from the event's {@link TripId} when it has one, else
+ * parsed from the canonical 8-4-4-4-12 hex string without building a UUID.
+ * <p>
+ * Rider, driver and strategy names are stored as ids from the codec's {@link NameDictionary},
+ * so records only decode against that dictionary. Records that leave the process must carry
+ * the names with them; {@code journal.TripJournal} writes each new name ahead of the first
+ * record that uses it.
+ */
+public final class TripEventCodec {
+    private final NameDictionary names;
+    private final TripEventFlyweight writer = new TripEventFlyweight();
+    private final TripEventFlyweight reader = new TripEventFlyweight();
+
+    public TripEventCodec(NameDictionary names) {
+        this.names = names;
+    }
+
+    public NameDictionary getNames() {
+        return names;
+    }
+
+    /**
+     * Writes {@code event} at the buffer's position and advances it by
+     * {@link TripEventFlyweight#BYTES}. Not thread-safe; use one codec per thread.
+     */
+    public void encode(TripEvent event, ByteBuffer out) {
+        TripId id = event.getId();
+        long high = id != null ? id.getHigh() : TripId.parseHigh(event.getTripId());
+        long low = id != null ? id.getLow() : TripId.parseLow(event.getTripId());
+        writer.wrap(out, out.position()).set(high, low, event.getType(), event.getEpochNanos(),
+                event.getSequence(), names.idOf(event.getRiderName()), names.idOf(event.getDriverName()),
+                names.idOf(event.getFareStrategyName()), event.hasFare(), event.getFareAmount());
+        out.position(out.position() + TripEventFlyweight.BYTES);
+    }
+
+    /**
+     * Reads the record at the buffer's position into a new event and advances the buffer.
+     * Callers that only need primitive fields should wrap a {@link TripEventFlyweight} instead.
+     *
+     * @throws IllegalArgumentException if the record has an unknown event type or name id; the
+     *         buffer position is left unchanged
+     */
+    public TripEvent decode(ByteBuffer in) {
+        TripEventFlyweight record = reader.wrap(in, in.position());
+        TripEvent event = new TripEvent(new TripId(record.tripIdHigh(), record.tripIdLow()), record.sequence(),
+                record.type(), record.epochNanos(), names.nameOf(record.riderId()),
+                names.nameOf(record.driverId()), record.hasFare(), record.fare(),
+                names.nameOf(record.strategyId()));
+        in.position(in.position() + TripEventFlyweight.BYTES);
+        return event;
+    }
+
+    public static long parseHigh(String tripId) {
+        return TripId.parseHigh(tripId);
+    }
+
+    public static long parseLow(String tripId) {
+        return TripId.parseLow(tripId);
+    }
+
+    public static String formatTripId(long high, long low) {
+        return TripId.format(high, low);
+    }
+}
@@ -0,0 +1,109 @@
+package core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size binary view of a trip event over a {@link ByteBuffer}. Reads and writes go
+ * straight to the buffer, so one instance can be re-wrapped over any number of records.
+ * <pre>
+ *  0  long   tripId high 64 bits
+ *  8  long   tripId low 64 bits
+ * 16  long   epoch nanos
+ * 24  long   sequence (0 when unknown)
+ * 32  double fare (valid only when the fare flag is set)
+ * 40  int    rider name id
+ * 44  int    driver name id (-1 when none)
+ * 48  int    fare strategy name id (-1 when none)
+ * 52  byte   event type ordinal
+ * 53  byte   flags (bit 0: fare present)
+ * </pre>
+ */
+public final class TripEventFlyweight {
+    public static final int BYTES = 54;
+
+    private static final int TRIP_ID_HIGH = 0;
+    private static final int TRIP_ID_LOW = 8;
+    private static final int EPOCH_NANOS = 16;
+    private static final int SEQUENCE = 24;
+    private static final int FARE = 32;
+    private static final int RIDER_ID = 40;
+    private static final int DRIVER_ID = 44;
+    private static final int STRATEGY_ID = 48;
+    private static final int TYPE = 52;
+    private static final int FLAGS = 53;
+    private static final byte FLAG_FARE = 1;
+    private static final TripEventType[] TYPES = TripEventType.values();
+
+    private ByteBuffer buffer;
+    private int offset;
+
+    public TripEventFlyweight wrap(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    public TripEventFlyweight set(long tripIdHigh, long tripIdLow, TripEventType type, long epochNanos,
+                                  long sequence, int riderId, int driverId, int strategyId,
+                                  boolean hasFare, double fare) {
+        buffer.putLong(offset + TRIP_ID_HIGH, tripIdHigh);
+        buffer.putLong(offset + TRIP_ID_LOW, tripIdLow);
+        buffer.putLong(offset + EPOCH_NANOS, epochNanos);
+        buffer.putLong(offset + SEQUENCE, sequence);
+        buffer.putDouble(offset + FARE, hasFare ? fare : 0.0);
+        buffer.putInt(offset + RIDER_ID, riderId);
+        buffer.putInt(offset + DRIVER_ID, driverId);
+        buffer.putInt(offset + STRATEGY_ID, strategyId);
+        buffer.put(offset + TYPE, (byte) type.ordinal());
+        buffer.put(offset + FLAGS, hasFare ? FLAG_FARE : 0);
+        return this;
+    }
+
+    public long tripIdHigh() {
+        return buffer.getLong(offset + TRIP_ID_HIGH);
+    }
+
+    public long tripIdLow() {
+        return buffer.getLong(offset + TRIP_ID_LOW);
+    }
+
+    public long epochNanos() {
+        return buffer.getLong(offset + EPOCH_NANOS);
+    }
+
+    public long sequence() {
+        return buffer.getLong(offset + SEQUENCE);
+    }
+
+    public int riderId() {
+        return buffer.getInt(offset + RIDER_ID);
+    }
+
+    public int driverId() {
+        return buffer.getInt(offset + DRIVER_ID);
+    }
+
+    public int strategyId() {
+        return buffer.getInt(offset + STRATEGY_ID);
+    }
+
+    public boolean hasFare() {
+        return (buffer.get(offset + FLAGS) & FLAG_FARE) != 0;
+    }
+
+    public double fare() {
+        return buffer.getDouble(offset + FARE);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the type byte is not a known event type, as in a
+     *         corrupt record
+     */
+    public TripEventType type() {
+        int ordinal = buffer.get(offset + TYPE);
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown event type ordinal: " + ordinal);
+        }
+        return TYPES[ordinal];
+    }
+}
@@ -1,5 +1,20 @@
 package core;
 
 public enum TripEventType {
-    REQUESTED, ACCEPTED, STARTED, COMPLETED, CANCELLED
+    REQUESTED, ACCEPTED, STARTED, COMPLETED, CANCELLED;
+
+    public TripStatus resultingStatus() {
+        switch (this) {
+            case REQUESTED:
+                return TripStatus.REQUESTED;
+            case ACCEPTED:
+                return TripStatus.ACCEPTED;
+            case STARTED:
+                return TripStatus.STARTED;
+            case COMPLETED:
+                return TripStatus.COMPLETED;
+            default:
+                return TripStatus.CANCELLED;
+        }
+    }
 }
@@ -0,0 +1,124 @@
+package core;
+
+/**
+ * 128-bit trip identifier. The canonical 8-4-4-4-12 hex string is only built the first
+ * time it is asked for, then cached.
+ */
+public final class TripId implements Comparable<TripId> {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long high;
+    private final long low;
+    private String text;
+
+    public TripId(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static TripId parse(String text) {
+        TripId id = new TripId(parseHigh(text), parseLow(text));
+        id.text = text;
+        return id;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        String formatted = text;
+        if (formatted == null) {
+            formatted = format(high, low);
+            text = formatted;
+        }
+        return formatted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TripId)) {
+            return false;
+        }
+        TripId other = (TripId) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high * 31 + low);
+    }
+
+    @Override
+    public int compareTo(TripId other) {
+        int byHigh = Long.compareUnsigned(high, other.high);
+        return byHigh != 0 ? byHigh : Long.compareUnsigned(low, other.low);
+    }
+
+    static long parseHigh(String text) {
+        checkFormat(text);
+        return hexBits(text, 0, 8) << 32 | hexBits(text, 9, 13) << 16 | hexBits(text, 14, 18);
+    }
+
+    static long parseLow(String text) {
+        checkFormat(text);
+        return hexBits(text, 19, 23) << 48 | hexBits(text, 24, 36);
+    }
+
+    static String format(long high, long low) {
+        return new String(toChars(high, low));
+    }
+
+    /**
+     * Appends the canonical form without building the cached string.
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        String formatted = text;
+        return formatted != null ? out.append(formatted) : out.append(toChars(high, low));
+    }
+
+    private static char[] toChars(long high, long low) {
+        char[] out = new char[36];
+        hexDigits(out, 0, high >>> 32, 8);
+        out[8] = '-';
+        hexDigits(out, 9, high >>> 16, 4);
+        out[13] = '-';
+        hexDigits(out, 14, high, 4);
+        out[18] = '-';
+        hexDigits(out, 19, low >>> 48, 4);
+        out[23] = '-';
+        hexDigits(out, 24, low, 12);
+        return out;
+    }
+
+    private static void checkFormat(String text) {
+        if (text == null || text.length() != 36 || text.charAt(8) != '-' || text.charAt(13) != '-'
+                || text.charAt(18) != '-' || text.charAt(23) != '-') {
+            throw new IllegalArgumentException("Trip id is not in 8-4-4-4-12 hex form: " + text);
+        }
+    }
+
+    private static long hexBits(String s, int from, int to) {
+        long bits = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Trip id is not in 8-4-4-4-12 hex form: " + s);
+            }
+            bits = bits << 4 | digit;
+        }
+        return bits;
+    }
+
+    private static void hexDigits(char[] out, int offset, long bits, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = HEX[(int) (bits & 0xF)];
+            bits >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package core;
+
+@FunctionalInterface
+public interface TripIdGenerator {
+    TripId next();
+}
@@ -0,0 +1,102 @@
+package core;
+
+import exceptions.InvalidParameterException;
+import observer.ObserverList;
+import strategy.FareStrategy;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recycles finished trips so steady create-complete churn stops feeding the young generation.
+ * <p>
+ * Each thread keeps its own free list, so acquire and release never contend. Trips from a
+ * pool notify the pool's shared observer set rather than carrying a set each; observers added
+ * with {@link Trip#addObserver} still apply to that one trip and are dropped when it is reused.
+ * <p>
+ * Releasing hands the object back for reuse under a new id, so the caller must own the trip and
+ * drop every other reference to it first. A trip still in a {@link TripRegistry} is removed from
+ * it before it goes on the free list. Events already raised are separate objects and stay valid.
+ * A holder that may outlive the ride should move it through the overloads taking a {@link TripId}
+ * (or {@link Trip#tryTransition}), which fail once the object carries another ride; the plain
+ * named transitions cannot tell that holder from the new one.
+ */
+public final class TripPool {
+    private final ObserverList observers;
+    private final TripIdGenerator idGenerator;
+    private final int maxPooledPerThread;
+    private final ThreadLocal<ArrayDeque<Trip>> free = ThreadLocal.withInitial(ArrayDeque::new);
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    public TripPool(ObserverList observers, int maxPooledPerThread) throws InvalidParameterException {
+        this(observers, TimeOrderedTripIdGenerator.DEFAULT, maxPooledPerThread);
+    }
+
+    public TripPool(ObserverList observers, TripIdGenerator idGenerator, int maxPooledPerThread)
+            throws InvalidParameterException {
+        if (observers == null) {
+            throw new InvalidParameterException("Shared observers cannot be null");
+        }
+        if (idGenerator == null) {
+            throw new InvalidParameterException("Trip id generator cannot be null");
+        }
+        if (maxPooledPerThread <= 0) {
+            throw new InvalidParameterException("Pool size must be greater than 0");
+        }
+        this.observers = observers;
+        this.idGenerator = idGenerator;
+        this.maxPooledPerThread = maxPooledPerThread;
+    }
+
+    /**
+     * A trip in CREATED status, reused from this thread's free list when one is available.
+     */
+    public Trip acquire(String riderName, String pickupLocation, String dropoffLocation,
+                        double distanceMiles, FareStrategy fareStrategy) throws InvalidParameterException {
+        Trip trip = free.get().poll();
+        if (trip == null) {
+            created.increment();
+            return new Trip(riderName, pickupLocation, dropoffLocation, distanceMiles, fareStrategy,
+                    idGenerator, this);
+        }
+        Trip.validate(riderName, pickupLocation, dropoffLocation, distanceMiles, fareStrategy);
+        trip.recycle(idGenerator.next(), riderName, pickupLocation, dropoffLocation, distanceMiles, fareStrategy);
+        reused.increment();
+        return trip;
+    }
+
+    /**
+     * Returns a finished trip to this thread's free list.
+     *
+     * @return false if the trip is not terminal, came from another pool, is already released,
+     *         or the free list is full
+     */
+    public boolean release(Trip trip) {
+        if (trip == null || trip.getPool() != this || !trip.getStatus().isTerminal()) {
+            return false;
+        }
+        ArrayDeque<Trip> trips = free.get();
+        if (trips.size() >= maxPooledPerThread || !trip.park()) {
+            return false;
+        }
+        TripRegistry registry = trip.getRegistry();
+        if (registry != null) {
+            registry.remove(trip.getId());
+        }
+        trips.push(trip);
+        return true;
+    }
+
+    public ObserverList getObservers() {
+        return observers;
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getReused() {
+        return reused.sum();
+    }
+}
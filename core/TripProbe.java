@@ -0,0 +1,22 @@
+package core;
+
+import observer.TripObserver;
+import strategy.FareStrategy;
+
+/**
+ * Receives timings from the trip hot path. Install one with {@link Trip#setProbe}; while none
+ * is installed the hot path skips its clock reads entirely. Implementations are called on the
+ * transitioning thread and must not allocate or block.
+ */
+public interface TripProbe {
+    /**
+     * A transition into {@code target} finished, including synchronous observer delivery.
+     */
+    void transitionCompleted(TripStatus target, long nanos);
+
+    void transitionRejected(TripStatus from, TripStatus target);
+
+    void fareCalculated(FareStrategy strategy, long nanos);
+
+    void observerNotified(TripObserver observer, long nanos);
+}
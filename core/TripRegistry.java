@@ -0,0 +1,198 @@
+package core;
+
+import exceptions.InvalidParameterException;
+import observer.TripObserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-memory trip store sharded by {@link TripId} hash, with secondary indexes from rider and
+ * driver name to their active (non-terminal) trips.
+ * <p>
+ * The registry attaches itself as an observer of every registered trip. On each event it
+ * re-reads the trip's current state, so the indexes end up right however racing
+ * transitions' events arrive. A trip belongs to at most one registry; a {@link TripPool}
+ * removes it before the trip can be reused under a new id.
+ */
+public class TripRegistry implements TripObserver {
+    private final List<Map<TripId, Trip>> shards;
+    private final int mask;
+    private final Map<String, Set<Trip>> activeByRider = new ConcurrentHashMap<>();
+    private final Map<String, Set<Trip>> activeByDriver = new ConcurrentHashMap<>();
+
+    public TripRegistry() throws InvalidParameterException {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public TripRegistry(int shardCount) throws InvalidParameterException {
+        if (shardCount <= 0) {
+            throw new InvalidParameterException("Shard count must be greater than 0");
+        }
+        int size = 1;
+        while (size < shardCount) {
+            size <<= 1;
+        }
+        List<Map<TripId, Trip>> shards = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            shards.add(new ConcurrentHashMap<>());
+        }
+        this.shards = List.copyOf(shards);
+        this.mask = size - 1;
+    }
+
+    public void register(Trip trip) throws InvalidParameterException {
+        if (trip == null) {
+            throw new InvalidParameterException("Trip cannot be null");
+        }
+        synchronized (trip) {
+            TripId id = trip.getId();
+            if (trip.getRegistry() != null || shardFor(id).putIfAbsent(id, trip) != null) {
+                throw new InvalidParameterException("Trip already registered: " + id);
+            }
+            trip.setRegistry(this);
+            trip.addObserver(this);
+            reindex(trip);
+        }
+    }
+
+    public Trip get(TripId tripId) {
+        return tripId == null ? null : shardFor(tripId).get(tripId);
+    }
+
+    /**
+     * Looks a trip up by its string id; null for ids that are not in 8-4-4-4-12 hex form.
+     */
+    public Trip get(String tripId) {
+        TripId id = parse(tripId);
+        return id == null ? null : get(id);
+    }
+
+    public Trip remove(TripId tripId) {
+        Trip trip = get(tripId);
+        if (trip == null) {
+            return null;
+        }
+        synchronized (trip) {
+            if (!shardFor(tripId).remove(tripId, trip)) {
+                return null;
+            }
+            trip.setRegistry(null);
+            trip.removeObserver(this);
+            unindex(activeByRider, trip.getRiderName(), trip);
+            if (trip.getDriverName() != null) {
+                unindex(activeByDriver, trip.getDriverName(), trip);
+            }
+        }
+        return trip;
+    }
+
+    public Trip remove(String tripId) {
+        TripId id = parse(tripId);
+        return id == null ? null : remove(id);
+    }
+
+    public Set<Trip> activeTripsForRider(String riderName) {
+        return view(activeByRider, riderName);
+    }
+
+    public Set<Trip> activeTripsForDriver(String driverName) {
+        return view(activeByDriver, driverName);
+    }
+
+    public void forEachWithStatus(TripStatus status, Consumer<Trip> action) {
+        for (Map<TripId, Trip> shard : shards) {
+            for (Trip trip : shard.values()) {
+                if (trip.getStatus() == status) {
+                    action.accept(trip);
+                }
+            }
+        }
+    }
+
+    public List<Trip> findByStatus(TripStatus status) {
+        List<Trip> result = new ArrayList<>();
+        forEachWithStatus(status, result::add);
+        return result;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<TripId, Trip> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void onTripEvent(TripEvent event) {
+        TripId id = event.getId() != null ? event.getId() : parse(event.getTripId());
+        Trip trip = get(id);
+        if (trip == null) {
+            return;
+        }
+        synchronized (trip) {
+            if (shardFor(id).get(id) == trip) {
+                reindex(trip);
+            }
+        }
+    }
+
+    // Caller holds the trip's lock. Status and driver only ever move forward, so indexing from
+    // the latest state is correct even when an older event is the one being handled.
+    private void reindex(Trip trip) {
+        String driverName = trip.getDriverName();
+        if (trip.getStatus().isTerminal()) {
+            unindex(activeByRider, trip.getRiderName(), trip);
+            if (driverName != null) {
+                unindex(activeByDriver, driverName, trip);
+            }
+        } else {
+            index(activeByRider, trip.getRiderName(), trip);
+            if (driverName != null) {
+                index(activeByDriver, driverName, trip);
+            }
+        }
+    }
+
+    private Map<TripId, Trip> shardFor(TripId tripId) {
+        int h = tripId.hashCode();
+        return shards.get((h ^ (h >>> 16)) & mask);
+    }
+
+    private static TripId parse(String tripId) {
+        if (tripId == null) {
+            return null;
+        }
+        try {
+            return TripId.parse(tripId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void index(Map<String, Set<Trip>> index, String key, Trip trip) {
+        index.compute(key, (k, trips) -> {
+            Set<Trip> result = trips != null ? trips : ConcurrentHashMap.newKeySet();
+            result.add(trip);
+            return result;
+        });
+    }
+
+    private static void unindex(Map<String, Set<Trip>> index, String key, Trip trip) {
+        index.computeIfPresent(key, (k, trips) -> {
+            trips.remove(trip);
+            return trips.isEmpty() ? null : trips;
+        });
+    }
+
+    private static Set<Trip> view(Map<String, Set<Trip>> index, String key) {
+        Set<Trip> trips = key == null ? null : index.get(key);
+        return trips == null ? Collections.emptySet() : Collections.unmodifiableSet(trips);
+    }
+}
@@ -1,5 +1,29 @@
 package core;
 
 public enum TripStatus {
-    CREATED, REQUESTED, ACCEPTED, STARTED, COMPLETED, CANCELLED
+    CREATED, REQUESTED, ACCEPTED, STARTED, COMPLETED, CANCELLED;
+
+    // Bitmask of statuses reachable from this one; the whole transition table lives here.
+    private int allowedNext;
+
+    static {
+        allow(CREATED, REQUESTED, CANCELLED);
+        allow(REQUESTED, ACCEPTED, CANCELLED);
+        allow(ACCEPTED, STARTED, CANCELLED);
+        allow(STARTED, COMPLETED);
+    }
+
+    private static void allow(TripStatus from, TripStatus... targets) {
+        for (TripStatus target : targets) {
+            from.allowedNext |= 1 << target.ordinal();
+        }
+    }
+
+    public boolean canTransitionTo(TripStatus next) {
+        return (allowedNext & (1 << next.ordinal())) != 0;
+    }
+
+    public boolean isTerminal() {
+        return allowedNext == 0;
+    }
 }
@@ -0,0 +1,246 @@
+package dispatch;
+
+import core.Trip;
+import core.TripStatus;
+import exceptions.IllegalTransitionException;
+import exceptions.InvalidParameterException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch mode that matches requested trips in batches instead of first come, first served.
+ * <p>
+ * Trips submitted during a window are grouped into geographic partitions by pickup. Each
+ * partition builds a sparse candidate graph (the nearest available drivers of every trip)
+ * and solves a min-total-distance assignment with the auction algorithm; partitions are
+ * solved in parallel. Matches are then applied through the {@link DispatchEngine}. A driver
+ * wanted by two partitions goes to whichever claims it first, and the loser's trip simply
+ * waits for the next tick, as do trips left unmatched.
+ */
+public class BatchDispatcher implements AutoCloseable {
+    private final DispatchEngine engine;
+    private final int candidatesPerTrip;
+    private final double partitionDegrees;
+    private final double epsilonKm;
+    private final double unassignedPenaltyKm;
+    private final ConcurrentLinkedQueue<Trip> pending = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService ticker;
+
+    public BatchDispatcher(DispatchEngine engine, int candidatesPerTrip, double partitionDegrees,
+                           double epsilonKm, double unassignedPenaltyKm) throws InvalidParameterException {
+        if (engine == null) {
+            throw new InvalidParameterException("Dispatch engine cannot be null");
+        }
+        if (candidatesPerTrip <= 0) {
+            throw new InvalidParameterException("Candidate count must be greater than 0");
+        }
+        if (!(partitionDegrees > 0)) {
+            throw new InvalidParameterException("Partition size must be greater than 0");
+        }
+        if (!(epsilonKm > 0)) {
+            throw new InvalidParameterException("Auction epsilon must be greater than 0");
+        }
+        if (!(unassignedPenaltyKm > 0)) {
+            throw new InvalidParameterException("Unassigned penalty must be greater than 0");
+        }
+        this.engine = engine;
+        this.candidatesPerTrip = candidatesPerTrip;
+        this.partitionDegrees = partitionDegrees;
+        this.epsilonKm = epsilonKm;
+        this.unassignedPenaltyKm = unassignedPenaltyKm;
+    }
+
+    public void submit(Trip trip) throws IllegalTransitionException, InvalidParameterException {
+        if (trip == null) {
+            throw new InvalidParameterException("Trip cannot be null");
+        }
+        if (trip.getStatus() != TripStatus.REQUESTED) {
+            throw new IllegalTransitionException(trip.getTripId(), "dispatch", trip.getStatus(), TripStatus.ACCEPTED);
+        }
+        pending.add(trip);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Runs {@link #tick()} every {@code windowMillis} on a background thread.
+     */
+    public synchronized void start(long windowMillis) throws InvalidParameterException {
+        if (windowMillis <= 0) {
+            throw new InvalidParameterException("Window must be greater than 0");
+        }
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "batch-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdown();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Matches everything pending right now.
+     *
+     * @return the number of trips accepted in this tick
+     */
+    public int tick() {
+        Map<Long, Partition> partitions = new HashMap<>();
+        List<Trip> carried = new ArrayList<>();
+        Trip trip;
+        while ((trip = pending.poll()) != null) {
+            if (trip.getStatus() != TripStatus.REQUESTED) {
+                continue;
+            }
+            GeoPoint pickup;
+            try {
+                pickup = engine.getLocationResolver().resolve(trip.getPickupLocation());
+            } catch (InvalidParameterException e) {
+                continue; // unroutable pickup; nothing a later tick could do differently
+            }
+            long key = (long) Math.floor(pickup.getLatitude() / partitionDegrees) << 32
+                    | ((long) Math.floor(pickup.getLongitude() / partitionDegrees) & 0xFFFFFFFFL);
+            partitions.computeIfAbsent(key, k -> new Partition()).add(trip, pickup);
+        }
+        List<Partition> work = new ArrayList<>(partitions.values());
+        work.parallelStream().forEach(Partition::solve);
+
+        int matched = 0;
+        for (Partition partition : work) {
+            for (int i = 0; i < partition.trips.size(); i++) {
+                Trip candidate = partition.trips.get(i);
+                String driverName = partition.assignedDriver(i);
+                if (driverName != null && engine.getDriverIndex().tryClaim(driverName)) {
+                    try {
+                        engine.assign(candidate, driverName);
+                        matched++;
+                        continue;
+                    } catch (IllegalTransitionException | InvalidParameterException e) {
+                        // Accepted or cancelled elsewhere since submission; assign() released the driver.
+                        continue;
+                    }
+                }
+                carried.add(candidate);
+            }
+        }
+        pending.addAll(carried);
+        return matched;
+    }
+
+    private final class Partition {
+        private final List<Trip> trips = new ArrayList<>();
+        private final List<GeoPoint> pickups = new ArrayList<>();
+        private final List<DriverIndex.Driver> drivers = new ArrayList<>();
+        private int[][] candidateDrivers;
+        private double[][] candidateCosts;
+        private int[] assignment;
+
+        private void add(Trip trip, GeoPoint pickup) {
+            trips.add(trip);
+            pickups.add(pickup);
+        }
+
+        private String assignedDriver(int tripIndex) {
+            int driver = assignment[tripIndex];
+            return driver < 0 ? null : drivers.get(driver).getName();
+        }
+
+        private void solve() {
+            buildCandidates();
+            assignment = auction();
+        }
+
+        private void buildCandidates() {
+            Map<DriverIndex.Driver, Integer> local = new HashMap<>();
+            candidateDrivers = new int[trips.size()][];
+            candidateCosts = new double[trips.size()][];
+            for (int i = 0; i < trips.size(); i++) {
+                GeoPoint pickup = pickups.get(i);
+                List<DriverIndex.Driver> nearest = engine.getDriverIndex().nearest(pickup, candidatesPerTrip);
+                candidateDrivers[i] = new int[nearest.size()];
+                candidateCosts[i] = new double[nearest.size()];
+                for (int c = 0; c < nearest.size(); c++) {
+                    DriverIndex.Driver driver = nearest.get(c);
+                    Integer index = local.get(driver);
+                    if (index == null) {
+                        index = drivers.size();
+                        local.put(driver, index);
+                        drivers.add(driver);
+                    }
+                    candidateDrivers[i][c] = index;
+                    GeoPoint position = driver.getPosition();
+                    candidateCosts[i][c] = position == null ? Double.MAX_VALUE : pickup.distanceKm(position);
+                }
+            }
+        }
+
+        /**
+         * Forward auction (Bertsekas) minimising total pickup distance. Every trip may also
+         * take a private "stay unmatched" option costing {@code unassignedPenaltyKm}, which
+         * keeps the problem feasible when trips outnumber drivers. The result is within
+         * {@code trips * epsilonKm} of the optimum.
+         */
+        private int[] auction() {
+            int[] assigned = new int[trips.size()];
+            int[] owner = new int[drivers.size()];
+            double[] price = new double[drivers.size()];
+            Arrays.fill(owner, -1);
+            ArrayDeque<Integer> unassigned = new ArrayDeque<>();
+            for (int i = 0; i < trips.size(); i++) {
+                assigned[i] = -1;
+                unassigned.add(i);
+            }
+            while (!unassigned.isEmpty()) {
+                int trip = unassigned.poll();
+                int[] options = candidateDrivers[trip];
+                double[] costs = candidateCosts[trip];
+                int best = -1;
+                double bestValue = -unassignedPenaltyKm;
+                double secondValue = -unassignedPenaltyKm;
+                for (int c = 0; c < options.length; c++) {
+                    double value = -costs[c] - price[options[c]];
+                    if (value > bestValue) {
+                        secondValue = bestValue;
+                        bestValue = value;
+                        best = options[c];
+                    } else if (value > secondValue) {
+                        secondValue = value;
+                    }
+                }
+                if (best < 0) {
+                    assigned[trip] = -1; // staying unmatched is its best option
+                    continue;
+                }
+                price[best] += bestValue - secondValue + epsilonKm;
+                int previous = owner[best];
+                owner[best] = trip;
+                assigned[trip] = best;
+                if (previous >= 0) {
+                    assigned[previous] = -1;
+                    unassigned.add(previous);
+                }
+            }
+            return assigned;
+        }
+    }
+}
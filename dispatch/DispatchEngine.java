@@ -0,0 +1,110 @@
+package dispatch;
+
+import core.Trip;
+import core.TripEvent;
+import core.TripId;
+import exceptions.IllegalTransitionException;
+import exceptions.InvalidParameterException;
+import observer.TripObserver;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Matches a requested trip to the nearest available driver and accepts it on their behalf.
+ * <p>
+ * Candidates come from the {@link DriverIndex}; each is claimed with a CAS before
+ * {@link Trip#accept(String)} is called, so two trips cannot take the same driver. The
+ * engine observes the trips it matches, once each however often they are dispatched, and
+ * frees the driver when the trip completes or is cancelled.
+ */
+public class DispatchEngine implements TripObserver {
+    private final DriverIndex drivers;
+    private final LocationResolver locations;
+    private final int candidates;
+    private final Set<TripId> observed = ConcurrentHashMap.newKeySet();
+
+    public DispatchEngine(DriverIndex drivers, LocationResolver locations, int candidates)
+            throws InvalidParameterException {
+        if (drivers == null) {
+            throw new InvalidParameterException("Driver index cannot be null");
+        }
+        if (locations == null) {
+            throw new InvalidParameterException("Location resolver cannot be null");
+        }
+        if (candidates <= 0) {
+            throw new InvalidParameterException("Candidate count must be greater than 0");
+        }
+        this.drivers = drivers;
+        this.locations = locations;
+        this.candidates = candidates;
+    }
+
+    public DriverIndex getDriverIndex() {
+        return drivers;
+    }
+
+    public LocationResolver getLocationResolver() {
+        return locations;
+    }
+
+    /**
+     * Accepts {@code trip} for the nearest driver that can be claimed.
+     *
+     * @return the chosen driver, or null when no available driver is in range
+     */
+    public String dispatch(Trip trip) throws IllegalTransitionException, InvalidParameterException {
+        if (trip == null) {
+            throw new InvalidParameterException("Trip cannot be null");
+        }
+        GeoPoint pickup = locations.resolve(trip.getPickupLocation());
+        List<String> nearest = drivers.nearestAvailable(pickup, candidates);
+        for (String driverName : nearest) {
+            if (drivers.tryClaim(driverName)) {
+                assign(trip, driverName);
+                return driverName;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Accepts {@code trip} for a driver already claimed through {@link DriverIndex#tryClaim}.
+     * The claim is released if the trip can no longer be accepted.
+     */
+    void assign(Trip trip, String driverName) throws IllegalTransitionException, InvalidParameterException {
+        TripId id = trip.getId();
+        boolean added = observed.add(id);
+        if (added) {
+            trip.addObserver(this);
+        }
+        try {
+            trip.accept(driverName);
+        } catch (IllegalTransitionException | InvalidParameterException e) {
+            if (added) {
+                trip.removeObserver(this);
+                observed.remove(id);
+            }
+            drivers.release(driverName);
+            throw e;
+        }
+    }
+
+    @Override
+    public void onTripEvent(TripEvent event) {
+        switch (event.getType()) {
+            case COMPLETED:
+            case CANCELLED:
+                if (event.getDriverName() != null) {
+                    drivers.release(event.getDriverName());
+                }
+                if (event.getId() != null) {
+                    observed.remove(event.getId());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package dispatch;
+
+import exceptions.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Grid index of online driver positions.
+ * <p>
+ * The map is cut into square cells of {@code cellDegrees}; each cell holds the drivers
+ * currently inside it. Position updates only touch the driver's own record and, when it
+ * crosses a cell border, two concurrent cell sets. Nearest-driver queries read the sets
+ * without locking and scan rings of cells outward from the pickup until no unscanned cell
+ * can hold anything closer than the k-th candidate found.
+ */
+public class DriverIndex {
+
+    static final class Driver {
+        private final String name;
+        private final AtomicBoolean available = new AtomicBoolean(true);
+        private volatile GeoPoint position;
+        private volatile long cell;
+        // Set under the driver's lock when it leaves the index, so no update can re-add it to a cell.
+        private volatile boolean removed;
+
+        private Driver(String name) {
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        GeoPoint getPosition() {
+            return position;
+        }
+
+        boolean isAvailable() {
+            return available.get();
+        }
+    }
+
+    private final double cellDegrees;
+    private final int maxRings;
+    private final Map<String, Driver> drivers = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Driver>> cells = new ConcurrentHashMap<>();
+
+    public DriverIndex(double cellDegrees, int maxRings) throws InvalidParameterException {
+        if (!(cellDegrees > 0)) {
+            throw new InvalidParameterException("Cell size must be greater than 0");
+        }
+        if (maxRings < 0) {
+            throw new InvalidParameterException("Max rings cannot be negative");
+        }
+        this.cellDegrees = cellDegrees;
+        this.maxRings = maxRings;
+    }
+
+    public void updatePosition(String driverName, GeoPoint position) throws InvalidParameterException {
+        if (driverName == null || driverName.isBlank()) {
+            throw new InvalidParameterException("Driver name cannot be null or blank");
+        }
+        if (position == null) {
+            throw new InvalidParameterException("Position cannot be null");
+        }
+        while (true) {
+            Driver driver = drivers.computeIfAbsent(driverName, Driver::new);
+            synchronized (driver) {
+                // Removed after we looked it up: retry against the record now in the map.
+                if (driver.removed) {
+                    continue;
+                }
+                long newCell = cellOf(position);
+                GeoPoint previous = driver.position;
+                driver.position = position;
+                if (previous == null || driver.cell != newCell) {
+                    addToCell(newCell, driver);
+                    if (previous != null) {
+                        removeFromCell(driver.cell, driver);
+                    }
+                    driver.cell = newCell;
+                }
+                return;
+            }
+        }
+    }
+
+    public void remove(String driverName) {
+        Driver driver = drivers.remove(driverName);
+        if (driver != null) {
+            synchronized (driver) {
+                driver.removed = true;
+                if (driver.position != null) {
+                    removeFromCell(driver.cell, driver);
+                }
+            }
+        }
+    }
+
+    public boolean isAvailable(String driverName) {
+        Driver driver = drivers.get(driverName);
+        return driver != null && driver.isAvailable();
+    }
+
+    public GeoPoint positionOf(String driverName) {
+        Driver driver = drivers.get(driverName);
+        return driver == null ? null : driver.position;
+    }
+
+    public int size() {
+        return drivers.size();
+    }
+
+    /**
+     * Counts available drivers by the zone {@code zoneOf} puts their position in; drivers with
+     * no position yet, or a null zone, are left out. Walks every driver, so it suits periodic
+     * readers such as surge recomputes rather than the dispatch path.
+     */
+    public Map<String, Integer> availableByZone(Function<GeoPoint, String> zoneOf) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Driver driver : drivers.values()) {
+            GeoPoint position = driver.position;
+            if (position == null || driver.removed || !driver.isAvailable()) {
+                continue;
+            }
+            String zone = zoneOf.apply(position);
+            if (zone != null) {
+                counts.merge(zone, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Atomically marks an available driver busy; only one caller can win a given driver.
+     */
+    public boolean tryClaim(String driverName) {
+        Driver driver = drivers.get(driverName);
+        return driver != null && driver.available.compareAndSet(true, false);
+    }
+
+    public void release(String driverName) {
+        Driver driver = drivers.get(driverName);
+        if (driver != null) {
+            driver.available.set(true);
+        }
+    }
+
+    /**
+     * Up to {@code k} available drivers closest to {@code point}, nearest first.
+     */
+    public List<String> nearestAvailable(GeoPoint point, int k) {
+        List<String> names = new ArrayList<>();
+        for (Driver driver : nearest(point, k)) {
+            names.add(driver.name);
+        }
+        return names;
+    }
+
+    List<Driver> nearest(GeoPoint point, int k) {
+        List<Driver> result = new ArrayList<>();
+        if (k <= 0) {
+            return result;
+        }
+        // Max-heap on distance so the worst of the current k is evicted first.
+        PriorityQueue<Candidate> best = new PriorityQueue<>(k,
+                Comparator.comparingDouble((Candidate c) -> c.distance).reversed());
+        int row = latIndex(point.getLatitude());
+        int col = lonIndex(point.getLongitude());
+        double cellKm = cellDegrees * GeoPoint.KM_PER_DEGREE
+                * Math.min(1.0, Math.cos(Math.toRadians(Math.abs(point.getLatitude()) + cellDegrees)));
+        for (int ring = 0; ring <= maxRings; ring++) {
+            for (int dr = -ring; dr <= ring; dr++) {
+                for (int dc = -ring; dc <= ring; dc++) {
+                    if (Math.abs(dr) == ring || Math.abs(dc) == ring) {
+                        scanCell(key(row + dr, col + dc), point, k, best);
+                    }
+                }
+            }
+            // Every unscanned cell is at least `ring` whole cells away from the pickup.
+            if (best.size() == k && best.peek().distance <= ring * cellKm) {
+                break;
+            }
+        }
+        List<Candidate> ordered = new ArrayList<>(best);
+        ordered.sort(Comparator.comparingDouble((Candidate c) -> c.distance));
+        for (Candidate candidate : ordered) {
+            result.add(candidate.driver);
+        }
+        return result;
+    }
+
+    private static final class Candidate {
+        private final Driver driver;
+        private final double distance;
+
+        private Candidate(Driver driver, double distance) {
+            this.driver = driver;
+            this.distance = distance;
+        }
+    }
+
+    private void scanCell(long key, GeoPoint point, int k, PriorityQueue<Candidate> best) {
+        Set<Driver> cell = cells.get(key);
+        if (cell == null) {
+            return;
+        }
+        for (Driver driver : cell) {
+            GeoPoint position = driver.position;
+            // A driver crossing a border sits in two cells briefly; count it where it is registered.
+            if (position == null || driver.cell != key || driver.removed || !driver.isAvailable()) {
+                continue;
+            }
+            double distance = point.distanceKm(position);
+            if (best.size() < k) {
+                best.add(new Candidate(driver, distance));
+            } else if (distance < best.peek().distance) {
+                best.poll();
+                best.add(new Candidate(driver, distance));
+            }
+        }
+    }
+
+    private void addToCell(long cell, Driver driver) {
+        cells.compute(cell, (k, members) -> {
+            Set<Driver> result = members != null ? members : ConcurrentHashMap.newKeySet();
+            result.add(driver);
+            return result;
+        });
+    }
+
+    private void removeFromCell(long cell, Driver driver) {
+        cells.computeIfPresent(cell, (k, members) -> {
+            members.remove(driver);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    private long cellOf(GeoPoint point) {
+        return key(latIndex(point.getLatitude()), lonIndex(point.getLongitude()));
+    }
+
+    private int latIndex(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    private int lonIndex(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    private static long key(int row, int col) {
+        return (long) row << 32 | (col & 0xFFFFFFFFL);
+    }
+}
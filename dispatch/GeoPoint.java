@@ -0,0 +1,45 @@
+package dispatch;
+
+import exceptions.InvalidParameterException;
+
+public final class GeoPoint {
+    static final double EARTH_RADIUS_KM = 6371.0;
+    static final double KM_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS_KM;
+
+    private final double latitude;
+    private final double longitude;
+
+    public GeoPoint(double latitude, double longitude) throws InvalidParameterException {
+        if (!(latitude >= -90 && latitude <= 90)) {
+            throw new InvalidParameterException("Latitude must be between -90 and 90");
+        }
+        if (!(longitude >= -180 && longitude <= 180)) {
+            throw new InvalidParameterException("Longitude must be between -180 and 180");
+        }
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Equirectangular approximation; accurate to well under 1% at metro scale.
+     */
+    public double distanceKm(GeoPoint other) {
+        double meanLat = Math.toRadians((latitude + other.latitude) / 2);
+        double dx = (other.longitude - longitude) * Math.cos(meanLat);
+        double dy = other.latitude - latitude;
+        return Math.sqrt(dx * dx + dy * dy) * KM_PER_DEGREE;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + latitude + ", " + longitude + ")";
+    }
+}
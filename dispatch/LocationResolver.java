@@ -0,0 +1,11 @@
+package dispatch;
+
+import exceptions.InvalidParameterException;
+
+/**
+ * Turns a trip's free-form pickup or dropoff string into coordinates.
+ */
+@FunctionalInterface
+public interface LocationResolver {
+    GeoPoint resolve(String location) throws InvalidParameterException;
+}
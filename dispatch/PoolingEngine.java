@@ -0,0 +1,362 @@
+package dispatch;
+
+import core.Trip;
+import core.TripEvent;
+import core.TripId;
+import core.TripStatus;
+import exceptions.IllegalTransitionException;
+import exceptions.InvalidParameterException;
+import observer.TripObserver;
+import strategy.FareStrategy;
+import strategy.SharedRideFare;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Groups compatible requested trips into one driver assignment and prices them as shared rides.
+ * <p>
+ * Open groups are indexed by (pickup cell, dropoff cell), so finding a pool for a new trip
+ * only looks at the cells within the configured radii of its own pickup and dropoff rather
+ * than every waiting trip; pick a cell size near the larger radius to keep that to the
+ * neighbouring cells. A trip joins a group when its pickup and dropoff are within the radii
+ * of the group's first trip and its heading is close enough. Full groups dispatch
+ * immediately; {@link #flush()} dispatches groups that have waited out their window, sending
+ * a group of one through the regular {@link DispatchEngine} at its original fare. Pooled
+ * trips are priced with the shared fare, keeping any surge layers of their own strategy.
+ */
+public class PoolingEngine {
+    // Caps the longitude span near the poles, where a degree of longitude shrinks to nothing.
+    private static final double MIN_LONGITUDE_SCALE = 0.01;
+
+    private final DispatchEngine engine;
+    private final SharedRideFare sharedFare;
+    private final double cellDegrees;
+    private final double pickupRadiusKm;
+    private final double dropoffRadiusKm;
+    private final double maxHeadingDegrees;
+    private final int maxRiders;
+    private final int candidateDrivers;
+    private final long maxWaitNanos;
+    private final LongSupplier clock;
+    private final Map<Long, List<Group>> openGroups = new HashMap<>();
+
+    private static final class Group {
+        private final long key;
+        private final GeoPoint pickup;
+        private final GeoPoint dropoff;
+        private final double heading;
+        private final long openedNanos;
+        private final List<Trip> trips = new ArrayList<>();
+
+        private Group(long key, GeoPoint pickup, GeoPoint dropoff, double heading, long openedNanos) {
+            this.key = key;
+            this.pickup = pickup;
+            this.dropoff = dropoff;
+            this.heading = heading;
+            this.openedNanos = openedNanos;
+        }
+    }
+
+    // Holds the driver until every pooled trip has completed or been cancelled. It is attached
+    // before each accept, so a trip that ends straight after being accepted is still counted;
+    // the driver is released only once every accept has been tried.
+    private final class PoolRelease implements TripObserver {
+        private final String driverName;
+        private final Set<TripId> riding = new HashSet<>();
+        private boolean sealed;
+        private boolean released;
+
+        private PoolRelease(String driverName) {
+            this.driverName = driverName;
+        }
+
+        private synchronized void add(TripId id) {
+            riding.add(id);
+        }
+
+        private synchronized void drop(TripId id) {
+            riding.remove(id);
+            releaseIfDone();
+        }
+
+        private synchronized void seal() {
+            sealed = true;
+            releaseIfDone();
+        }
+
+        @Override
+        public synchronized void onTripEvent(TripEvent event) {
+            if (event.getType().resultingStatus().isTerminal()) {
+                drop(event.getId());
+            }
+        }
+
+        private void releaseIfDone() {
+            if (sealed && !released && riding.isEmpty()) {
+                released = true;
+                engine.getDriverIndex().release(driverName);
+            }
+        }
+    }
+
+    public PoolingEngine(DispatchEngine engine, SharedRideFare sharedFare, double cellDegrees,
+                         double pickupRadiusKm, double dropoffRadiusKm, double maxHeadingDegrees,
+                         int maxRiders, int candidateDrivers, long maxWaitMillis) throws InvalidParameterException {
+        this(engine, sharedFare, cellDegrees, pickupRadiusKm, dropoffRadiusKm, maxHeadingDegrees,
+                maxRiders, candidateDrivers, maxWaitMillis, System::nanoTime);
+    }
+
+    public PoolingEngine(DispatchEngine engine, SharedRideFare sharedFare, double cellDegrees,
+                         double pickupRadiusKm, double dropoffRadiusKm, double maxHeadingDegrees,
+                         int maxRiders, int candidateDrivers, long maxWaitMillis, LongSupplier clock)
+            throws InvalidParameterException {
+        if (engine == null) {
+            throw new InvalidParameterException("Dispatch engine cannot be null");
+        }
+        if (sharedFare == null) {
+            throw new InvalidParameterException("Shared fare cannot be null");
+        }
+        if (!(cellDegrees > 0) || !(pickupRadiusKm > 0) || !(dropoffRadiusKm > 0)) {
+            throw new InvalidParameterException("Cell size and radii must be greater than 0");
+        }
+        if (!(maxHeadingDegrees >= 0 && maxHeadingDegrees <= 180)) {
+            throw new InvalidParameterException("Max heading difference must be between 0 and 180");
+        }
+        if (maxRiders < 2) {
+            throw new InvalidParameterException("A pool needs room for at least 2 riders");
+        }
+        if (candidateDrivers <= 0) {
+            throw new InvalidParameterException("Candidate count must be greater than 0");
+        }
+        if (maxWaitMillis <= 0) {
+            throw new InvalidParameterException("Max wait must be greater than 0");
+        }
+        this.engine = engine;
+        this.sharedFare = sharedFare;
+        this.cellDegrees = cellDegrees;
+        this.pickupRadiusKm = pickupRadiusKm;
+        this.dropoffRadiusKm = dropoffRadiusKm;
+        this.maxHeadingDegrees = maxHeadingDegrees;
+        this.maxRiders = maxRiders;
+        this.candidateDrivers = candidateDrivers;
+        this.maxWaitNanos = maxWaitMillis * 1_000_000L;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a requested trip to a compatible open pool, or opens a new one.
+     *
+     * @return the driver if this trip filled its pool and it was dispatched, otherwise null
+     */
+    public synchronized String offer(Trip trip) throws IllegalTransitionException, InvalidParameterException {
+        if (trip == null) {
+            throw new InvalidParameterException("Trip cannot be null");
+        }
+        if (trip.getStatus() != TripStatus.REQUESTED) {
+            throw new IllegalTransitionException(trip.getTripId(), "pool", trip.getStatus(), TripStatus.ACCEPTED);
+        }
+        LocationResolver locations = engine.getLocationResolver();
+        GeoPoint pickup = locations.resolve(trip.getPickupLocation());
+        GeoPoint dropoff = locations.resolve(trip.getDropoffLocation());
+        double heading = bearing(pickup, dropoff);
+
+        Group group = findCompatible(pickup, dropoff, heading);
+        if (group == null) {
+            int pr = cell(pickup.getLatitude());
+            int pc = cell(pickup.getLongitude());
+            int dr = cell(dropoff.getLatitude());
+            int dc = cell(dropoff.getLongitude());
+            group = new Group(key(pr, pc, dr, dc), pickup, dropoff, heading, clock.getAsLong());
+            openGroups.computeIfAbsent(group.key, k -> new ArrayList<>()).add(group);
+        }
+        group.trips.add(trip);
+        if (group.trips.size() >= maxRiders) {
+            String driver = dispatchPool(group);
+            if (driver != null) {
+                close(group);
+            }
+            return driver;
+        }
+        return null;
+    }
+
+    /**
+     * Dispatches every group that has waited at least the configured window.
+     *
+     * @return the number of trips accepted
+     */
+    public synchronized int flush() {
+        long now = clock.getAsLong();
+        int accepted = 0;
+        for (Iterator<List<Group>> lists = openGroups.values().iterator(); lists.hasNext(); ) {
+            List<Group> groups = lists.next();
+            for (Iterator<Group> it = groups.iterator(); it.hasNext(); ) {
+                Group group = it.next();
+                group.trips.removeIf(t -> t.getStatus() != TripStatus.REQUESTED);
+                if (group.trips.isEmpty()) {
+                    it.remove();
+                    continue;
+                }
+                if (now - group.openedNanos < maxWaitNanos) {
+                    continue;
+                }
+                if (group.trips.size() == 1) {
+                    try {
+                        if (engine.dispatch(group.trips.get(0)) != null) {
+                            accepted++;
+                            it.remove();
+                        }
+                    } catch (IllegalTransitionException | InvalidParameterException e) {
+                        it.remove();
+                    }
+                } else if (dispatchPool(group) != null) {
+                    accepted += group.trips.size();
+                    it.remove();
+                }
+            }
+            if (groups.isEmpty()) {
+                lists.remove();
+            }
+        }
+        return accepted;
+    }
+
+    public synchronized int getWaitingTrips() {
+        int waiting = 0;
+        for (List<Group> groups : openGroups.values()) {
+            for (Group group : groups) {
+                waiting += group.trips.size();
+            }
+        }
+        return waiting;
+    }
+
+    private Group findCompatible(GeoPoint pickup, GeoPoint dropoff, double heading) {
+        int pr = cell(pickup.getLatitude());
+        int pc = cell(pickup.getLongitude());
+        int dr = cell(dropoff.getLatitude());
+        int dc = cell(dropoff.getLongitude());
+        int prSpan = span(pickupRadiusKm, 1.0);
+        int pcSpan = span(pickupRadiusKm, longitudeScale(pickup));
+        int drSpan = span(dropoffRadiusKm, 1.0);
+        int dcSpan = span(dropoffRadiusKm, longitudeScale(dropoff));
+        Group best = null;
+        double bestDetour = Double.MAX_VALUE;
+        for (int a = -prSpan; a <= prSpan; a++) {
+            for (int b = -pcSpan; b <= pcSpan; b++) {
+                for (int c = -drSpan; c <= drSpan; c++) {
+                    for (int d = -dcSpan; d <= dcSpan; d++) {
+                        List<Group> groups = openGroups.get(key(pr + a, pc + b, dr + c, dc + d));
+                        if (groups == null) {
+                            continue;
+                        }
+                        for (Group group : groups) {
+                            if (group.trips.size() >= maxRiders) {
+                                continue;
+                            }
+                            double pickupKm = group.pickup.distanceKm(pickup);
+                            double dropoffKm = group.dropoff.distanceKm(dropoff);
+                            if (pickupKm <= pickupRadiusKm && dropoffKm <= dropoffRadiusKm
+                                    && headingDifference(group.heading, heading) <= maxHeadingDegrees
+                                    && pickupKm + dropoffKm < bestDetour) {
+                                best = group;
+                                bestDetour = pickupKm + dropoffKm;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private String dispatchPool(Group group) {
+        DriverIndex drivers = engine.getDriverIndex();
+        for (String driverName : drivers.nearestAvailable(group.pickup, candidateDrivers)) {
+            if (!drivers.tryClaim(driverName)) {
+                continue;
+            }
+            PoolRelease release = new PoolRelease(driverName);
+            int accepted = 0;
+            for (Trip trip : group.trips) {
+                // Priced as shared before the move, so the ACCEPTED event already names that fare.
+                FareStrategy original = trip.getFareStrategy();
+                TripId id = trip.getId();
+                release.add(id);
+                trip.addObserver(release);
+                try {
+                    trip.setFareStrategy(sharedFare.under(original));
+                    trip.accept(driverName);
+                    accepted++;
+                } catch (IllegalTransitionException | InvalidParameterException e) {
+                    // Cancelled or accepted elsewhere while waiting to pool; ride without it.
+                    trip.removeObserver(release);
+                    release.drop(id);
+                    restore(trip, original);
+                }
+            }
+            release.seal();
+            return accepted > 0 ? driverName : null;
+        }
+        return null;
+    }
+
+    private void close(Group group) {
+        List<Group> groups = openGroups.get(group.key);
+        if (groups != null) {
+            groups.remove(group);
+            if (groups.isEmpty()) {
+                openGroups.remove(group.key);
+            }
+        }
+    }
+
+    private static void restore(Trip trip, FareStrategy original) {
+        try {
+            trip.setFareStrategy(original);
+        } catch (InvalidParameterException e) {
+            // original came from the trip, so it is never null
+        }
+    }
+
+    // Cells to search either side so that every point within radiusKm is covered.
+    private int span(double radiusKm, double scale) {
+        return (int) Math.ceil(radiusKm / (cellDegrees * GeoPoint.KM_PER_DEGREE * scale));
+    }
+
+    // Width of a degree of longitude relative to latitude, at the cell edge nearest the pole.
+    private double longitudeScale(GeoPoint point) {
+        return Math.max(MIN_LONGITUDE_SCALE,
+                Math.cos(Math.toRadians(Math.min(90.0, Math.abs(point.getLatitude()) + cellDegrees))));
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(int pickupRow, int pickupCol, int dropoffRow, int dropoffCol) {
+        long h = pickupRow;
+        h = h * 0x9E3779B97F4A7C15L + pickupCol;
+        h = h * 0x9E3779B97F4A7C15L + dropoffRow;
+        return h * 0x9E3779B97F4A7C15L + dropoffCol;
+    }
+
+    private static double bearing(GeoPoint from, GeoPoint to) {
+        double dx = (to.getLongitude() - from.getLongitude())
+                * Math.cos(Math.toRadians((from.getLatitude() + to.getLatitude()) / 2));
+        double dy = to.getLatitude() - from.getLatitude();
+        return Math.toDegrees(Math.atan2(dx, dy));
+    }
+
+    private static double headingDifference(double a, double b) {
+        double diff = Math.abs(a - b) % 360;
+        return diff > 180 ? 360 - diff : diff;
+    }
+}
@@ -1,7 +1,57 @@
 package exceptions;
 
+import core.TripStatus;
+
+/**
+ * Raised when a trip cannot make the attempted transition from its current status.
+ * <p>
+ * Instances built from structured fields are expected, high-volume failures (lost accept
+ * races, repeated completes), so they skip the stack trace unless {@link StackTraces} says
+ * otherwise and format their message only when it is asked for.
+ */
 public class IllegalTransitionException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final String tripId;
+    private final String action;
+    private final TripStatus fromStatus;
+    private final TripStatus targetStatus;
+
     public IllegalTransitionException(String message) {
         super(message);
+        this.tripId = null;
+        this.action = null;
+        this.fromStatus = null;
+        this.targetStatus = null;
+    }
+
+    public IllegalTransitionException(String tripId, String action, TripStatus fromStatus, TripStatus targetStatus) {
+        super(null, null, false, StackTraces.ENABLED);
+        this.tripId = tripId;
+        this.action = action;
+        this.fromStatus = fromStatus;
+        this.targetStatus = targetStatus;
+    }
+
+    @Override
+    public String getMessage() {
+        String message = super.getMessage();
+        return message != null || action == null ? message : "Cannot " + action + " trip from status: " + fromStatus;
+    }
+
+    public String getTripId() {
+        return tripId;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public TripStatus getFromStatus() {
+        return fromStatus;
+    }
+
+    public TripStatus getTargetStatus() {
+        return targetStatus;
     }
 }
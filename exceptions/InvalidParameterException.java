@@ -1,7 +1,27 @@
 package exceptions;
 
+/**
+ * Raised when a constructor or operation is given an unusable argument. Instances that
+ * name the offending parameter are expected failures on the transition path and, like
+ * {@link IllegalTransitionException}, skip the stack trace unless {@link StackTraces} says
+ * otherwise.
+ */
 public class InvalidParameterException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final String parameter;
+
     public InvalidParameterException(String message) {
         super(message);
+        this.parameter = null;
+    }
+
+    public InvalidParameterException(String parameter, String message) {
+        super(message, null, false, StackTraces.ENABLED);
+        this.parameter = parameter;
+    }
+
+    public String getParameter() {
+        return parameter;
     }
 }
@@ -0,0 +1,13 @@
+package exceptions;
+
+/**
+ * Whether the structured, expected-failure exceptions record a stack trace. They are
+ * stackless by default because filling one in costs more than the rejected transition;
+ * start with {@code -Drideshare.exceptions.stackTraces=true} to capture them while debugging.
+ */
+final class StackTraces {
+    static final boolean ENABLED = Boolean.getBoolean("rideshare.exceptions.stackTraces");
+
+    private StackTraces() {
+    }
+}
@@ -0,0 +1,228 @@
+package journal;
+
+import core.TripStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * On-disk form of one checkpoint: {@code [int magic][byte kind][long journalPosition]}, then
+ * each trip state behind a 1 byte, a 0 byte, and a trailing CRC32 of everything before it.
+ * A FULL checkpoint holds every live trip; a DELTA holds the trips changed since the
+ * previous checkpoint. Files are written under a temporary name and moved into place, so
+ * a crash never leaves a partial checkpoint behind. A file is read whole and its checksum
+ * verified before anything in it is parsed.
+ * <p>
+ * Only the fare strategy's {@code name()} is kept, as on the events themselves; multipliers and
+ * other parameters are not, so a recovered trip cannot rebuild its exact strategy.
+ */
+final class Checkpoint {
+    static final String PREFIX = "trip-checkpoint-";
+    static final String SUFFIX = ".ckp";
+    static final byte FULL = 0;
+    static final byte DELTA = 1;
+    private static final int MAGIC = 0x54524350;
+    private static final TripStatus[] STATUSES = TripStatus.values();
+    private static final int HEADER_BYTES = Integer.BYTES + 1 + Long.BYTES;
+
+    /**
+     * Checkpoints read back in order, from the latest full one onwards.
+     */
+    static final class Loaded {
+        final Map<String, TripState> states = new LinkedHashMap<>();
+        long journalPosition;
+        long lastSequence = -1;
+    }
+
+    private Checkpoint() {
+    }
+
+    static void write(Path directory, long sequence, byte kind, long journalPosition,
+                      Collection<TripState> states) throws IOException {
+        Path file = directory.resolve(name(sequence));
+        Path temporary = directory.resolve(name(sequence) + ".tmp");
+        CRC32 crc = new CRC32();
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                OutputStream raw = Channels.newOutputStream(channel);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new CheckedOutputStream(raw, crc), 64 * 1024));
+                out.writeInt(MAGIC);
+                out.writeByte(kind);
+                out.writeLong(journalPosition);
+                for (TripState state : states) {
+                    out.writeByte(1);
+                    writeState(out, state);
+                }
+                out.writeByte(0);
+                out.flush();
+                new DataOutputStream(raw).writeInt((int) crc.getValue());
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the latest full checkpoint and the deltas after it. Loading stops at the first
+     * file that fails its checksum, since every later delta builds on it.
+     */
+    static Loaded load(Path directory) throws IOException {
+        Loaded loaded = new Loaded();
+        List<Path> files = files(directory);
+        int from = 0;
+        for (int i = files.size() - 1; i >= 0; i--) {
+            if (kindOf(files.get(i)) == FULL) {
+                from = i;
+                break;
+            }
+        }
+        for (int i = from; i < files.size(); i++) {
+            if (!read(files.get(i), loaded)) {
+                break;
+            }
+            loaded.lastSequence = sequenceOf(files.get(i));
+        }
+        return loaded;
+    }
+
+    static List<Path> files(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.filter(Checkpoint::isCheckpoint).forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(Checkpoint::sequenceOf));
+        return files;
+    }
+
+    static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static String name(long sequence) {
+        return PREFIX + String.format("%020d", sequence) + SUFFIX;
+    }
+
+    private static boolean isCheckpoint(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    private static byte kindOf(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC ? in.readByte() : -1;
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    private static boolean read(Path file, Loaded loaded) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int body = bytes.length - Integer.BYTES;
+        if (body < HEADER_BYTES + 1) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, body);
+        if (ByteBuffer.wrap(bytes, body, Integer.BYTES).getInt() != (int) crc.getValue()) {
+            return false;
+        }
+        List<TripState> states = new ArrayList<>();
+        long journalPosition;
+        byte kind;
+        // The checksum matched, so anything unparseable here is a writer bug, not a torn file;
+        // it is still treated as an invalid checkpoint rather than failing recovery.
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, body));
+            if (in.readInt() != MAGIC) {
+                return false;
+            }
+            kind = in.readByte();
+            journalPosition = in.readLong();
+            while (in.readByte() != 0) {
+                states.add(readState(in));
+            }
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+        if (kind == FULL) {
+            loaded.states.clear();
+        }
+        for (TripState state : states) {
+            loaded.states.put(state.getTripId(), state);
+        }
+        loaded.journalPosition = journalPosition;
+        return true;
+    }
+
+    private static void writeState(DataOutputStream out, TripState state) throws IOException {
+        out.writeUTF(state.getTripId());
+        writeNullable(out, state.getRiderName());
+        out.writeByte(state.getStatus().ordinal());
+        writeNullable(out, state.getDriverName());
+        Double fare = state.getLastFare();
+        out.writeBoolean(fare != null);
+        if (fare != null) {
+            out.writeDouble(fare);
+        }
+        writeNullable(out, state.getFareStrategyName());
+        out.writeLong(state.getLastEpochNanos());
+        out.writeLong(state.getSequence());
+    }
+
+    private static TripState readState(DataInputStream in) throws IOException {
+        String tripId = in.readUTF();
+        String riderName = readNullable(in);
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= STATUSES.length) {
+            throw new IOException("Unknown trip status " + ordinal);
+        }
+        TripStatus status = STATUSES[ordinal];
+        String driverName = readNullable(in);
+        Double fare = in.readBoolean() ? in.readDouble() : null;
+        String fareStrategyName = readNullable(in);
+        long epochNanos = in.readLong();
+        long sequence = in.readLong();
+        return new TripState(tripId, riderName, status, driverName, fare, fareStrategyName, epochNanos, sequence);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
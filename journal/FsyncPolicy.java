@@ -0,0 +1,10 @@
+package journal;
+
+public enum FsyncPolicy {
+    /** Leave write-back of mapped pages to the OS. */
+    NEVER,
+    /** A background thread forces everything appended since the last commit, once per interval. */
+    GROUP_COMMIT,
+    /** Force after every append; one syscall per event. */
+    EVERY_EVENT
+}
@@ -0,0 +1,96 @@
+package journal;
+
+import core.NameDictionary;
+import core.TripEvent;
+import core.TripEventCodec;
+import core.TripEventFlyweight;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk framing of one record: {@code [int length][int crc32][payload]}. A zero length
+ * marks the end of the written part of a segment (mapped files start zero-filled).
+ * <p>
+ * A payload is either an EVENT, a fixed-size {@link TripEventFlyweight} record, or a NAME,
+ * which defines the next id of the segment's {@link NameDictionary}. Every segment starts
+ * with an empty dictionary, and each name is written ahead of the first event that uses it,
+ * so a segment decodes on its own.
+ */
+final class JournalRecord {
+    static final int HEADER_BYTES = 8;
+    static final int EVENT_BYTES = 1 + TripEventFlyweight.BYTES;
+    static final int MAX_NAME_BYTES = 16 * 1024;
+    private static final byte NAME = 0;
+    private static final byte EVENT = 1;
+
+    private JournalRecord() {
+    }
+
+    static void encodeEvent(TripEventCodec codec, TripEvent event, ByteBuffer out) {
+        out.put(EVENT);
+        codec.encode(event, out);
+    }
+
+    static void encodeName(int id, byte[] name, ByteBuffer out) {
+        out.put(NAME).putInt(id).put(name);
+    }
+
+    static int nameBytes(byte[] name) {
+        return 1 + 4 + name.length;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code name} is longer than {@link #MAX_NAME_BYTES}
+     */
+    static void checkName(String name) {
+        // No UTF-8 form is longer than three bytes per char, so short names skip the encoding.
+        if (name != null && name.length() > MAX_NAME_BYTES / 3) {
+            utf8(name);
+        }
+    }
+
+    /**
+     * UTF-8 form of {@code name}.
+     *
+     * @throws IllegalArgumentException if it is longer than {@link #MAX_NAME_BYTES}
+     */
+    static byte[] utf8(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Name is longer than " + MAX_NAME_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    /**
+     * Applies a NAME payload to {@code names} and returns null, or decodes an EVENT payload.
+     *
+     * @throws IllegalArgumentException if the payload is neither, or refers to an unknown name
+     */
+    static TripEvent decode(ByteBuffer in, NameDictionary names, TripEventCodec codec) {
+        byte kind = in.get();
+        if (kind == NAME && in.remaining() >= 4) {
+            int id = in.getInt();
+            byte[] bytes = new byte[in.remaining()];
+            in.get(bytes);
+            names.define(id, new String(bytes, StandardCharsets.UTF_8));
+            return null;
+        }
+        if (kind == EVENT && in.remaining() == TripEventFlyweight.BYTES) {
+            return codec.decode(in);
+        }
+        throw new IllegalArgumentException("Malformed journal record of kind " + kind);
+    }
+
+    static boolean isEvent(ByteBuffer in) {
+        return in.get(in.position()) == EVENT;
+    }
+
+    static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,188 @@
+package journal;
+
+import core.NameDictionary;
+import core.TripEvent;
+import core.TripEventCodec;
+import observer.TripObserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Reads journal segments back in order. Replay stops at the first zero length or checksum
+ * mismatch in a segment, which is where a crash cut the last append short.
+ * <p>
+ * With a checkpoint directory written by {@link TripSnapshotter}, recovery starts from the
+ * latest checkpoint and replays only the journal written after it.
+ */
+public final class JournalRecovery {
+
+    private JournalRecovery() {
+    }
+
+    /**
+     * Rebuilds the latest state of every trip that appears in the journal.
+     */
+    public static Map<String, TripState> recover(Path directory) throws IOException {
+        Map<String, TripState> states = new LinkedHashMap<>();
+        replay(directory, event -> apply(states, event));
+        return states;
+    }
+
+    /**
+     * Rebuilds the live (non-terminal) trips from the latest checkpoint in
+     * {@code checkpointDirectory} plus the journal events appended after it. A checkpoint may
+     * already reflect some events just after its journal position; {@link #apply} skips them
+     * as stale.
+     */
+    public static Map<String, TripState> recover(Path journalDirectory, Path checkpointDirectory) throws IOException {
+        Checkpoint.Loaded checkpoint = Checkpoint.load(checkpointDirectory);
+        Map<String, TripState> states = checkpoint.states;
+        replay(journalDirectory, checkpoint.journalPosition, event -> apply(states, event));
+        states.values().removeIf(state -> state.getStatus().isTerminal());
+        return states;
+    }
+
+    /**
+     * Feeds every intact journaled event, oldest first, to {@code observer}.
+     */
+    public static long replay(Path directory, TripObserver observer) throws IOException {
+        return replay(directory, 0, observer);
+    }
+
+    /**
+     * Feeds the intact events at or after {@code fromPosition} to {@code observer}. Earlier
+     * segments are skipped without being read.
+     */
+    static long replay(Path directory, long fromPosition, TripObserver observer) throws IOException {
+        long fromSegment = fromPosition >>> 32;
+        long replayed = 0;
+        for (Path segment : segments(directory)) {
+            long index = indexOf(segment);
+            if (index >= fromSegment) {
+                replayed += replaySegment(segment, index == fromSegment ? (int) fromPosition : 0, observer);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Packs a segment index and an offset within it into one ordered long.
+     */
+    static long position(long segmentIndex, int offset) {
+        return segmentIndex << 32 | offset;
+    }
+
+    // Racing transitions can reach the journal out of order, so only a newer event replaces a state.
+    static void apply(Map<String, TripState> states, TripEvent event) {
+        TripState previous = states.get(event.getTripId());
+        if (isNewer(previous, event)) {
+            states.put(event.getTripId(), next(previous, event));
+        }
+    }
+
+    /**
+     * Whether {@code event} comes after {@code previous} in its trip's history: by sequence when
+     * both carry one, else by whether it is a legal move from the previous status.
+     */
+    static boolean isNewer(TripState previous, TripEvent event) {
+        if (previous == null) {
+            return true;
+        }
+        if (event.getSequence() > 0 && previous.getSequence() > 0) {
+            return event.getSequence() > previous.getSequence();
+        }
+        return previous.getStatus().canTransitionTo(event.getType().resultingStatus());
+    }
+
+    static TripState next(TripState previous, TripEvent event) {
+        String driverName = event.getDriverName() != null ? event.getDriverName()
+                : previous != null ? previous.getDriverName() : null;
+        Double fare = event.hasFare() ? event.getFare()
+                : previous != null ? previous.getLastFare() : null;
+        String fareStrategyName = event.getFareStrategyName() != null ? event.getFareStrategyName()
+                : previous != null ? previous.getFareStrategyName() : null;
+        return new TripState(event.getTripId(), event.getRiderName(), event.getType().resultingStatus(),
+                driverName, fare, fareStrategyName, event.getEpochNanos(), event.getSequence());
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(JournalRecovery::isSegment).forEach(segments::add);
+            segments.sort(Comparator.comparingLong(JournalRecovery::indexOf));
+            return segments;
+        }
+    }
+
+    static String segmentName(long index) {
+        return TripJournal.SEGMENT_PREFIX + String.format("%020d", index) + TripJournal.SEGMENT_SUFFIX;
+    }
+
+    static long indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(TripJournal.SEGMENT_PREFIX.length(),
+                name.length() - TripJournal.SEGMENT_SUFFIX.length()));
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(TripJournal.SEGMENT_PREFIX) && name.endsWith(TripJournal.SEGMENT_SUFFIX);
+    }
+
+    // Reads from the start of the segment: records before offset only contribute their names.
+    private static long replaySegment(Path file, int offset, TripObserver observer) throws IOException {
+        long replayed = 0;
+        NameDictionary names = new NameDictionary();
+        TripEventCodec codec = new TripEventCodec(names);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] payload = new byte[0];
+            while (segment.remaining() >= JournalRecord.HEADER_BYTES) {
+                int position = segment.position();
+                int length = segment.getInt();
+                int checksum = segment.getInt();
+                if (length <= 0 || length > segment.remaining()) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                segment.get(payload, 0, length);
+                if (JournalRecord.checksum(payload, 0, length) != checksum) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(payload, 0, length);
+                if (position < offset && JournalRecord.isEvent(record)) {
+                    continue;
+                }
+                TripEvent event;
+                try {
+                    event = JournalRecord.decode(record, names, codec);
+                } catch (IllegalArgumentException e) {
+                    // Intact but unreadable: treat it like a torn tail rather than guess past it.
+                    break;
+                }
+                if (event != null) {
+                    observer.onTripEvent(event);
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+}
@@ -0,0 +1,265 @@
+package journal;
+
+import core.NameDictionary;
+import core.TripEvent;
+import core.TripEventCodec;
+import exceptions.InvalidParameterException;
+import observer.TripObserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durable observer that appends every trip event to memory-mapped segment files.
+ * <p>
+ * An append is a copy into the mapped segment under a short lock, with no syscall; a new
+ * segment is mapped only when the current one is full. Durability is governed by the
+ * {@link FsyncPolicy}: under GROUP_COMMIT one background force covers every event appended
+ * since the previous commit. Each journal instance starts a fresh segment after the ones
+ * already in the directory; {@link JournalRecovery} reads them back in order.
+ * <p>
+ * Events are stored as fixed-size {@link TripEventCodec} records, with each segment carrying
+ * the names its records refer to (see {@link JournalRecord}). As an observer the journal
+ * never throws into the transitioning thread: an event it cannot encode is dropped and
+ * counted, and the first I/O failure latches the journal as failed, after which every event
+ * is dropped. Check {@link #getFailure()} to find out.
+ */
+public final class TripJournal implements TripObserver, AutoCloseable {
+    static final String SEGMENT_PREFIX = "trip-journal-";
+    static final String SEGMENT_SUFFIX = ".seg";
+    // Smallest segment that fits the largest append: three new names and the event itself.
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final byte[][] NO_NAMES = new byte[0][];
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final ByteBuffer scratch = ByteBuffer.allocate(JournalRecord.MAX_NAME_BYTES + 5);
+    private final ByteBuffer eventScratch = ByteBuffer.allocate(JournalRecord.EVENT_BYTES);
+    private final ScheduledExecutorService committer;
+    private final LongAdder droppedEvents = new LongAdder();
+
+    private long segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private NameDictionary names;
+    private TripEventCodec codec;
+    private int committedPosition;
+    private long appendedEvents;
+    private boolean closed;
+    private IOException failure;
+
+    public TripJournal(Path directory, int segmentBytes, FsyncPolicy fsyncPolicy, long groupCommitMillis)
+            throws InvalidParameterException, IOException {
+        if (directory == null) {
+            throw new InvalidParameterException("Journal directory cannot be null");
+        }
+        if (segmentBytes < MAX_RECORD_BYTES) {
+            throw new InvalidParameterException("Segment size must be at least " + MAX_RECORD_BYTES + " bytes");
+        }
+        if (fsyncPolicy == null) {
+            throw new InvalidParameterException("Fsync policy cannot be null");
+        }
+        if (fsyncPolicy == FsyncPolicy.GROUP_COMMIT && groupCommitMillis <= 0) {
+            throw new InvalidParameterException("Group commit interval must be greater than 0");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+
+        List<Path> existing = JournalRecovery.segments(directory);
+        this.segmentIndex = existing.isEmpty() ? -1 : JournalRecovery.indexOf(existing.get(existing.size() - 1));
+        openNextSegment();
+
+        if (fsyncPolicy == FsyncPolicy.GROUP_COMMIT) {
+            this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "trip-journal-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            committer.scheduleWithFixedDelay(this::commit, groupCommitMillis, groupCommitMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.committer = null;
+        }
+    }
+
+    @Override
+    public void onTripEvent(TripEvent event) {
+        try {
+            append(event);
+        } catch (IOException e) {
+            latch(e);
+        } catch (RuntimeException e) {
+            // Not encodable, such as an oversized name or a malformed string id.
+            droppedEvents.increment();
+        }
+    }
+
+    /**
+     * @throws IOException if the journal is closed, has failed before, or fails now
+     * @throws IllegalArgumentException if a name is longer than 16 KiB in UTF-8, or a string
+     *         trip id is malformed
+     */
+    public synchronized void append(TripEvent event) throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        if (failure != null) {
+            throw new IOException("Journal failed on an earlier append", failure);
+        }
+        // Checked before encoding, which interns names that must then reach the segment.
+        JournalRecord.checkName(event.getRiderName());
+        JournalRecord.checkName(event.getDriverName());
+        JournalRecord.checkName(event.getFareStrategyName());
+        int start = segment.position();
+        if (!tryAppend(event)) {
+            rollSegment();
+            start = 0;
+            if (!tryAppend(event)) {
+                throw new IllegalStateException("Record does not fit an empty segment");
+            }
+        }
+        appendedEvents++;
+        if (fsyncPolicy == FsyncPolicy.EVERY_EVENT) {
+            segment.force(start, segment.position() - start);
+            committedPosition = segment.position();
+        }
+    }
+
+    /**
+     * Forces everything appended since the previous commit. Called by the group-commit
+     * thread; safe to call directly.
+     */
+    public void commit() {
+        MappedByteBuffer toForce;
+        int from;
+        int to;
+        synchronized (this) {
+            if (closed || segment.position() == committedPosition) {
+                return;
+            }
+            toForce = segment;
+            from = committedPosition;
+            to = segment.position();
+            committedPosition = to;
+        }
+        toForce.force(from, to - from);
+    }
+
+    /**
+     * Where the next append will land, as {@link JournalRecovery#position(long, int)}.
+     */
+    synchronized long position() {
+        return JournalRecovery.position(segmentIndex, segment.position());
+    }
+
+    public synchronized long getAppendedEvents() {
+        return appendedEvents;
+    }
+
+    /**
+     * Events handed to {@link #onTripEvent} that were not journaled.
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * The I/O failure that stopped this journal, or null while it is healthy.
+     */
+    public synchronized IOException getFailure() {
+        return failure;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (committer != null) {
+            committer.shutdown();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                segment.force();
+            }
+            channel.close();
+        }
+    }
+
+    private synchronized void latch(IOException e) {
+        droppedEvents.increment();
+        if (failure == null && !closed) {
+            failure = e;
+        }
+    }
+
+    // Writes the event's new names and then the event, or nothing if they do not all fit.
+    private boolean tryAppend(TripEvent event) {
+        int firstNew = names.size();
+        eventScratch.clear();
+        JournalRecord.encodeEvent(codec, event, eventScratch);
+        int fresh = names.size() - firstNew;
+        byte[][] newNames = fresh == 0 ? NO_NAMES : new byte[fresh][];
+        int needed = JournalRecord.HEADER_BYTES + eventScratch.position();
+        for (int i = 0; i < fresh; i++) {
+            newNames[i] = JournalRecord.utf8(names.nameOf(firstNew + i));
+            needed += JournalRecord.HEADER_BYTES + JournalRecord.nameBytes(newNames[i]);
+        }
+        if (segment.remaining() < needed) {
+            return false;
+        }
+        for (int i = 0; i < fresh; i++) {
+            scratch.clear();
+            JournalRecord.encodeName(firstNew + i, newNames[i], scratch);
+            putRecord(scratch);
+        }
+        putRecord(eventScratch);
+        return true;
+    }
+
+    private void putRecord(ByteBuffer payload) {
+        int length = payload.position();
+        int start = segment.position();
+        segment.putInt(start + 4, JournalRecord.checksum(payload.array(), 0, length));
+        segment.position(start + JournalRecord.HEADER_BYTES);
+        segment.put(payload.array(), 0, length);
+        // Length goes in last so a torn append is never mistaken for a complete record.
+        segment.putInt(start, length);
+    }
+
+    private void rollSegment() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            segment.force();
+        }
+        channel.close();
+        openNextSegment();
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentIndex++;
+        Path file = directory.resolve(JournalRecovery.segmentName(segmentIndex));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        names = new NameDictionary();
+        codec = new TripEventCodec(names);
+        committedPosition = 0;
+    }
+}
@@ -0,0 +1,192 @@
+package journal;
+
+import core.TripEvent;
+import exceptions.InvalidParameterException;
+import observer.TripObserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Observer that keeps the latest state of every live trip and periodically checkpoints it,
+ * so recovery replays only the journal written since the last checkpoint.
+ * <p>
+ * Attach it in place of the {@link TripJournal} it wraps. Each event updates the trip's
+ * state and marks it dirty, then is appended to the journal. Recording first means that
+ * anything the journal holds before a checkpoint's position is already in that checkpoint.
+ * A background thread writes the dirty trips as a DELTA checkpoint. Every
+ * {@code deltasPerFull} deltas it writes a FULL checkpoint of all live trips instead and
+ * deletes the older files. Transitions never wait for a checkpoint. Trips that reach a
+ * terminal status are dropped from memory once a checkpoint has recorded them.
+ * <p>
+ * On construction it recovers from the existing checkpoints and journal, then writes a
+ * full checkpoint. Construct it before any events reach the journal.
+ */
+public final class TripSnapshotter implements TripObserver, AutoCloseable {
+    private final Path directory;
+    private final TripJournal journal;
+    private final int deltasPerFull;
+    private final Map<String, TripState> live = new ConcurrentHashMap<>();
+    private final Map<String, TripState> dirty = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService checkpointer;
+    private final LongAdder failedCheckpoints = new LongAdder();
+
+    private long sequence;
+    private int deltasSinceFull;
+    private long checkpoints;
+    private long lastCheckpointTrips;
+    private boolean closed;
+
+    public TripSnapshotter(Path directory, TripJournal journal, long intervalMillis, int deltasPerFull)
+            throws InvalidParameterException, IOException {
+        if (directory == null) {
+            throw new InvalidParameterException("Checkpoint directory cannot be null");
+        }
+        if (journal == null) {
+            throw new InvalidParameterException("Journal cannot be null");
+        }
+        if (intervalMillis <= 0) {
+            throw new InvalidParameterException("Checkpoint interval must be greater than 0");
+        }
+        if (deltasPerFull < 0) {
+            throw new InvalidParameterException("Deltas per full checkpoint cannot be negative");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.journal = journal;
+        this.deltasPerFull = deltasPerFull;
+
+        List<Path> existing = Checkpoint.files(directory);
+        this.sequence = existing.isEmpty() ? -1 : Checkpoint.sequenceOf(existing.get(existing.size() - 1));
+        live.putAll(JournalRecovery.recover(journal.getDirectory(), directory));
+        write(true);
+
+        this.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "trip-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onTripEvent(TripEvent event) {
+        // Marking dirty inside compute keeps a racing older state from overwriting a newer one,
+        // and an event that arrives after a later one of the same trip is ignored.
+        live.compute(event.getTripId(), (tripId, previous) -> {
+            if (!JournalRecovery.isNewer(previous, event)) {
+                return previous;
+            }
+            TripState next = JournalRecovery.next(previous, event);
+            dirty.put(tripId, next);
+            return next;
+        });
+        journal.onTripEvent(event);
+    }
+
+    /**
+     * Writes the trips changed since the previous checkpoint, or every live trip when a full
+     * checkpoint is due. Called by the background thread; safe to call directly.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (closed) {
+            return;
+        }
+        write(deltasSinceFull >= deltasPerFull);
+    }
+
+    /**
+     * Latest state of each live trip, plus terminal trips not yet checkpointed.
+     */
+    public Map<String, TripState> getLiveTrips() {
+        return Collections.unmodifiableMap(live);
+    }
+
+    public int getDirtyTrips() {
+        return dirty.size();
+    }
+
+    public synchronized long getCheckpoints() {
+        return checkpoints;
+    }
+
+    public synchronized long getLastCheckpointTrips() {
+        return lastCheckpointTrips;
+    }
+
+    public long getFailedCheckpoints() {
+        return failedCheckpoints.sum();
+    }
+
+    /**
+     * Stops the background thread and writes a last checkpoint. The wrapped journal stays
+     * open; close it afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        checkpointer.shutdown();
+        try {
+            checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            write(false);
+            closed = true;
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            // The trips stay dirty, so the next checkpoint picks them up.
+            failedCheckpoints.increment();
+        }
+    }
+
+    private synchronized void write(boolean full) throws IOException {
+        long position = journal.position();
+        List<TripState> states = new ArrayList<>((full ? live : dirty).values());
+        if (!full && states.isEmpty()) {
+            return;
+        }
+        long written = ++sequence;
+        Checkpoint.write(directory, written, full ? Checkpoint.FULL : Checkpoint.DELTA, position, states);
+        for (TripState state : states) {
+            dirty.remove(state.getTripId(), state);
+            if (state.getStatus().isTerminal()) {
+                live.remove(state.getTripId(), state);
+            }
+        }
+        checkpoints++;
+        lastCheckpointTrips = states.size();
+        if (full) {
+            deltasSinceFull = 0;
+            deleteBefore(written);
+        } else {
+            deltasSinceFull++;
+        }
+    }
+
+    private void deleteBefore(long fullSequence) throws IOException {
+        for (Path file : Checkpoint.files(directory)) {
+            if (Checkpoint.sequenceOf(file) < fullSequence) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package journal;
+
+import core.TripEvent;
+import core.TripStatus;
+
+import java.time.Instant;
+
+/**
+ * Latest known state of a trip as rebuilt from the journal or a checkpoint.
+ */
+public final class TripState {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final String tripId;
+    private final String riderName;
+    private final TripStatus status;
+    private final String driverName;
+    private final Double lastFare;
+    private final String fareStrategyName;
+    private final long lastEpochNanos;
+    private final long sequence;
+    private String lastTimestamp;
+
+    public TripState(String tripId, String riderName, TripStatus status,
+                     String driverName, Double lastFare, String lastTimestamp) {
+        this(tripId, riderName, status, driverName, lastFare, null,
+                lastTimestamp == null ? NO_TIMESTAMP : TripEvent.toEpochNanos(Instant.parse(lastTimestamp)), 0);
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    public TripState(String tripId, String riderName, TripStatus status, String driverName,
+                     Double lastFare, String fareStrategyName, long lastEpochNanos, long sequence) {
+        this.tripId = tripId;
+        this.riderName = riderName;
+        this.status = status;
+        this.driverName = driverName;
+        this.lastFare = lastFare;
+        this.fareStrategyName = fareStrategyName;
+        this.lastEpochNanos = lastEpochNanos;
+        this.sequence = sequence;
+    }
+
+    public String getTripId() {
+        return tripId;
+    }
+
+    public String getRiderName() {
+        return riderName;
+    }
+
+    public TripStatus getStatus() {
+        return status;
+    }
+
+    public String getDriverName() {
+        return driverName;
+    }
+
+    public Double getLastFare() {
+        return lastFare;
+    }
+
+    /**
+     * Name of the trip's fare strategy as of its latest event; after completion, the one that
+     * priced it.
+     */
+    public String getFareStrategyName() {
+        return fareStrategyName;
+    }
+
+    public long getLastEpochNanos() {
+        return lastEpochNanos;
+    }
+
+    /**
+     * Sequence of the latest event applied to this state; 0 when unknown.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    // ISO-8601 form, formatted on first use.
+    public String getLastTimestamp() {
+        String formatted = lastTimestamp;
+        if (formatted == null && lastEpochNanos != NO_TIMESTAMP) {
+            formatted = Instant.ofEpochSecond(Math.floorDiv(lastEpochNanos, NANOS_PER_SECOND),
+                    Math.floorMod(lastEpochNanos, NANOS_PER_SECOND)).toString();
+            lastTimestamp = formatted;
+        }
+        return formatted;
+    }
+}
@@ -0,0 +1,214 @@
+package logging;
+
+import exceptions.InvalidParameterException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves log I/O off the trip thread. A fixed set of line buffers circulates between a free
+ * queue and a pending queue: callers take a free buffer, format into it and queue it, and one
+ * background thread writes pending lines out in batches and hands the buffers back. Nothing
+ * is allocated per line once buffers have grown to their working size. When every buffer is
+ * in flight the line is dropped and counted rather than stalling the caller.
+ * <p>
+ * Closing drains what is queued and flushes, but leaves the underlying stream open. A line
+ * claimed before close but published after the writer has stopped is counted as dropped.
+ */
+public final class AsyncLogAppender implements LogAppender, AutoCloseable {
+    private final ArrayBlockingQueue<StringBuilder> free;
+    private final ArrayBlockingQueue<StringBuilder> pending;
+    private final Writer out;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final LongAdder writeFailures = new LongAdder();
+    private final Object flushed = new Object();
+    private char[] scratch = new char[256];
+    private volatile boolean closed;
+    private volatile boolean stopped;
+    // Set by the writer just before it parks, so publishers only unpark a writer that may sleep.
+    private volatile boolean sleeping;
+    // Only changed under the flushed monitor; the writer reads it to skip signalling nobody.
+    private volatile int flushWaiters;
+
+    public AsyncLogAppender(OutputStream out, int capacity) throws InvalidParameterException {
+        if (out == null) {
+            throw new InvalidParameterException("Output stream cannot be null");
+        }
+        if (capacity <= 0) {
+            throw new InvalidParameterException("Capacity must be greater than 0");
+        }
+        this.free = new ArrayBlockingQueue<>(capacity);
+        this.pending = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            free.add(new StringBuilder(128));
+        }
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        this.writer = new Thread(this::run, "log-appender");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public StringBuilder claim() {
+        StringBuilder buffer = closed ? null : free.poll();
+        if (buffer == null) {
+            dropped.increment();
+        }
+        return buffer;
+    }
+
+    @Override
+    public void publish(StringBuilder line) {
+        queued.incrementAndGet();
+        pending.add(line); // cannot fail: there are only as many buffers as slots
+        if (stopped) {
+            // The writer has finished; if it did not take the line on its way out, nobody will.
+            if (pending.remove(line)) {
+                queued.decrementAndGet();
+                dropped.increment();
+                line.setLength(0);
+                free.add(line);
+            }
+        } else if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Blocks until every line published so far has been written and flushed.
+     */
+    public void flush() throws InterruptedException {
+        long target = queued.get();
+        if (written.get() >= target) {
+            return;
+        }
+        synchronized (flushed) {
+            flushWaiters++;
+            try {
+                while (written.get() < target && !stopped) {
+                    flushed.wait();
+                }
+            } finally {
+                flushWaiters--;
+            }
+        }
+    }
+
+    /**
+     * An interrupt while waiting for the writer does not cut closing short; the flag is
+     * restored afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        if (joinUninterruptibly(writer)) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Waits out interrupts so closing always finishes; reports whether one arrived.
+    private static boolean joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                return interrupted;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+    }
+
+    public long getDroppedLines() {
+        return dropped.sum();
+    }
+
+    public long getWrittenLines() {
+        return written.get();
+    }
+
+    public long getWriteFailures() {
+        return writeFailures.sum();
+    }
+
+    // Parks when idle; publish and close unpark it.
+    private void run() {
+        while (true) {
+            StringBuilder line = pending.poll();
+            if (line != null) {
+                writeBatch(line);
+                continue;
+            }
+            if (closed) {
+                stopped = true;
+                // Lines published while stopping; publish drops any that arrive after this.
+                writeBatch(pending.poll());
+                signalFlushed();
+                return;
+            }
+            sleeping = true;
+            if (pending.isEmpty() && !closed) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void writeBatch(StringBuilder line) {
+        long batch = 0;
+        for (; line != null; line = pending.poll()) {
+            write(line);
+            batch++;
+        }
+        if (batch == 0) {
+            return;
+        }
+        flushOut();
+        written.addAndGet(batch);
+        if (flushWaiters > 0) {
+            signalFlushed();
+        }
+    }
+
+    private void signalFlushed() {
+        synchronized (flushed) {
+            flushed.notifyAll();
+        }
+    }
+
+    private void write(StringBuilder line) {
+        int length = line.length();
+        if (scratch.length <= length) {
+            scratch = new char[Math.max(length + 1, scratch.length * 2)];
+        }
+        line.getChars(0, length, scratch, 0);
+        scratch[length] = '\n';
+        try {
+            out.write(scratch, 0, length + 1);
+        } catch (IOException e) {
+            writeFailures.increment();
+        }
+        line.setLength(0);
+        free.add(line);
+    }
+
+    private void flushOut() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            writeFailures.increment();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package logging;
+
+/**
+ * Destination for formatted log lines. A caller claims a buffer, formats one line into it
+ * (without a trailing newline) and publishes it; buffers are reused, so a caller must not
+ * touch one after publishing it.
+ */
+public interface LogAppender {
+    LogAppender STDOUT = new PrintStreamAppender();
+
+    /**
+     * An empty buffer to format the next line into, or null if the line should be dropped.
+     */
+    StringBuilder claim();
+
+    void publish(StringBuilder line);
+}
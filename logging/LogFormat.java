@@ -0,0 +1,6 @@
+package logging;
+
+public enum LogFormat {
+    TEXT,
+    JSON_LINES
+}
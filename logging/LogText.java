@@ -0,0 +1,216 @@
+package logging;
+
+import core.TripEvent;
+import core.TripId;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Allocation-free formatting of the pieces log lines are made of.
+ */
+public final class LogText {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final double MAX_EXACT_CENTS = 1e9;
+    private static final double HALF_CENT_MARGIN = 1e-6;
+
+    private LogText() {
+    }
+
+    /**
+     * Appends an amount rounded to cents exactly as {@code String.format("%.2f")} prints it:
+     * half-up on the shortest decimal form of the double, with the sign kept on amounts that
+     * round to zero. Amounts near a half cent, or too large for exact cents, take a BigDecimal
+     * detour; everything else is formatted without allocating.
+     */
+    public static StringBuilder appendMoney(StringBuilder out, double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            return out.append(amount);
+        }
+        double scaled = Math.abs(amount) * 100;
+        double fraction = scaled - Math.floor(scaled);
+        if (scaled >= MAX_EXACT_CENTS || Math.abs(fraction - 0.5) < HALF_CENT_MARGIN) {
+            return appendMoneyExact(out, amount);
+        }
+        long cents = (long) Math.rint(scaled);
+        if (Math.copySign(1.0, amount) < 0) {
+            out.append('-');
+        }
+        out.append(cents / 100).append('.');
+        long remainder = cents % 100;
+        if (remainder < 10) {
+            out.append('0');
+        }
+        return out.append(remainder);
+    }
+
+    private static StringBuilder appendMoneyExact(StringBuilder out, double amount) {
+        BigDecimal rounded = new BigDecimal(Double.toString(amount)).setScale(2, RoundingMode.HALF_UP);
+        if (rounded.signum() == 0 && Math.copySign(1.0, amount) < 0) {
+            out.append('-');
+        }
+        return out.append(rounded.toPlainString());
+    }
+
+    // Date and time of day for the most recent second formatted; events cluster in time.
+    private static final class SecondPrefix {
+        private final long second;
+        private final char[] text;
+
+        private SecondPrefix(long second, char[] text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    private static volatile SecondPrefix lastSecond = new SecondPrefix(Long.MIN_VALUE, null);
+
+    /**
+     * Appends an ISO-8601 UTC timestamp in the same shape as {@link java.time.Instant#toString()}.
+     */
+    public static StringBuilder appendTimestamp(StringBuilder out, long epochNanos) {
+        long seconds = Math.floorDiv(epochNanos, NANOS_PER_SECOND);
+        int nanos = (int) Math.floorMod(epochNanos, NANOS_PER_SECOND);
+        SecondPrefix prefix = lastSecond;
+        if (prefix.second != seconds) {
+            char[] text = formatSecond(seconds);
+            if (text == null) {
+                return out.append(java.time.Instant.ofEpochSecond(seconds, nanos));
+            }
+            prefix = new SecondPrefix(seconds, text);
+            lastSecond = prefix;
+        }
+        out.append(prefix.text);
+        if (nanos != 0) {
+            out.append('.');
+            if (nanos % 1_000_000 == 0) {
+                pad(out, nanos / 1_000_000, 3);
+            } else if (nanos % 1000 == 0) {
+                pad(out, nanos / 1000, 6);
+            } else {
+                pad(out, nanos, 9);
+            }
+        }
+        return out.append('Z');
+    }
+
+    public static StringBuilder appendTripId(StringBuilder out, TripEvent event) {
+        TripId id = event.getId();
+        return id != null ? id.appendTo(out) : out.append(event.getTripId());
+    }
+
+    /**
+     * Appends {@code value} as a quoted JSON string, or {@code null}.
+     */
+    public static StringBuilder appendJsonString(StringBuilder out, CharSequence value) {
+        if (value == null) {
+            return out.append("null");
+        }
+        return appendJsonEscaped(out.append('"'), value).append('"');
+    }
+
+    /**
+     * JSON-escapes, in place, whatever was appended to {@code out} from index {@code from} on.
+     */
+    public static StringBuilder escapeJsonFrom(StringBuilder out, int from) {
+        for (int i = from; i < out.length(); i++) {
+            char c = out.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                String raw = out.substring(from);
+                out.setLength(from);
+                return appendJsonEscaped(out, raw);
+            }
+        }
+        return out;
+    }
+
+    private static StringBuilder appendJsonEscaped(StringBuilder out, CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Appends the fields every JSON line shares: timestamp, event type, trip, rider, driver
+     * and fare. Leaves the object open so callers can add their own fields and close it.
+     */
+    public static StringBuilder openJsonEvent(StringBuilder out, TripEvent event) {
+        appendTimestamp(out.append("{\"ts\":\""), event.getEpochNanos()).append('"');
+        out.append(",\"event\":\"").append(event.getType().name()).append('"');
+        appendTripId(out.append(",\"tripId\":\""), event).append('"');
+        appendJsonString(out.append(",\"rider\":"), event.getRiderName());
+        appendJsonString(out.append(",\"driver\":"), event.getDriverName());
+        if (event.hasFare()) {
+            appendMoney(out.append(",\"fare\":"), event.getFareAmount());
+        }
+        if (event.getFareStrategyName() != null) {
+            appendJsonString(out.append(",\"strategy\":"), event.getFareStrategyName());
+        }
+        return out;
+    }
+
+    // yyyy-MM-ddTHH:mm:ss, or null outside years 0000-9999.
+    private static char[] formatSecond(long seconds) {
+        long days = Math.floorDiv(seconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(seconds, SECONDS_PER_DAY);
+
+        // Civil date from days since 1970-01-01 (proleptic Gregorian).
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder(19);
+        pad(text, year, 4).append('-');
+        pad(text, month, 2).append('-');
+        pad(text, day, 2).append('T');
+        pad(text, secondOfDay / 3600, 2).append(':');
+        pad(text, secondOfDay / 60 % 60, 2).append(':');
+        pad(text, secondOfDay % 60, 2);
+        char[] chars = new char[text.length()];
+        text.getChars(0, chars.length, chars, 0);
+        return chars;
+    }
+
+    private static StringBuilder pad(StringBuilder out, long value, int width) {
+        for (long limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                out.append('0');
+            }
+        }
+        return out.append(value);
+    }
+}
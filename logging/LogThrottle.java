@@ -0,0 +1,95 @@
+package logging;
+
+import core.TripEventType;
+import exceptions.InvalidParameterException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per event type sampling and rate limiting for log observers. A type can be sampled to one
+ * line in every N events on average and capped at a number of lines per one-second window;
+ * by default everything is admitted. Rules may be changed while events are flowing.
+ */
+public final class LogThrottle {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final class Rule {
+        private volatile int sampleEvery = 1;
+        private volatile int maxPerSecond;
+        private final AtomicLong window = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong windowCount = new AtomicLong();
+        private final LongAdder suppressed = new LongAdder();
+    }
+
+    private final Rule[] rules = new Rule[TripEventType.values().length];
+    private final LongSupplier clock;
+
+    public LogThrottle() {
+        this(System::nanoTime);
+    }
+
+    public LogThrottle(LongSupplier clock) {
+        this.clock = clock;
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = new Rule();
+        }
+    }
+
+    /**
+     * Logs a random one in {@code everyN} events of {@code type}; 1 logs all of them. Sampling
+     * is random rather than counted so the hot path shares no counter between threads.
+     */
+    public LogThrottle sample(TripEventType type, int everyN) throws InvalidParameterException {
+        if (type == null) {
+            throw new InvalidParameterException("Event type cannot be null");
+        }
+        if (everyN <= 0) {
+            throw new InvalidParameterException("Sample interval must be greater than 0");
+        }
+        rules[type.ordinal()].sampleEvery = everyN;
+        return this;
+    }
+
+    /**
+     * Caps lines for {@code type} at {@code perSecond}; 0 removes the cap.
+     */
+    public LogThrottle limit(TripEventType type, int perSecond) throws InvalidParameterException {
+        if (type == null) {
+            throw new InvalidParameterException("Event type cannot be null");
+        }
+        if (perSecond < 0) {
+            throw new InvalidParameterException("Rate limit cannot be negative");
+        }
+        rules[type.ordinal()].maxPerSecond = perSecond;
+        return this;
+    }
+
+    public boolean admit(TripEventType type) {
+        Rule rule = rules[type.ordinal()];
+        int every = rule.sampleEvery;
+        if (every > 1 && ThreadLocalRandom.current().nextInt(every) != 0) {
+            rule.suppressed.increment();
+            return false;
+        }
+        int max = rule.maxPerSecond;
+        if (max > 0) {
+            long second = clock.getAsLong() / NANOS_PER_SECOND;
+            long current = rule.window.get();
+            if (current != second && rule.window.compareAndSet(current, second)) {
+                rule.windowCount.set(0);
+            }
+            if (rule.windowCount.incrementAndGet() > max) {
+                rule.suppressed.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getSuppressed(TripEventType type) {
+        return rules[type.ordinal()].suppressed.sum();
+    }
+}
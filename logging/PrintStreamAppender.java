@@ -0,0 +1,33 @@
+package logging;
+
+import java.io.PrintStream;
+
+/**
+ * Writes each line straight to a print stream on the calling thread, formatting into a
+ * per-thread buffer. Without an explicit stream it writes to whatever {@code System.out}
+ * is at the time.
+ */
+public final class PrintStreamAppender implements LogAppender {
+    private final PrintStream out;
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    public PrintStreamAppender() {
+        this(null);
+    }
+
+    public PrintStreamAppender(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public StringBuilder claim() {
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    @Override
+    public void publish(StringBuilder line) {
+        (out != null ? out : System.out).println(line);
+    }
+}
@@ -0,0 +1,104 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent HDR-style histogram of non-negative longs. Each power of two is split into
+ * 32 linear sub-buckets (about 3% relative error); values above the configured range are
+ * clamped into the top bucket. Recording is one atomic increment; histograms with the
+ * same range merge by adding counts.
+ */
+public final class LogLinearHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final int maxValueBits;
+    private final AtomicLongArray counts;
+
+    public LogLinearHistogram(int maxValueBits) {
+        if (maxValueBits <= SUB_BUCKET_BITS || maxValueBits > 62) {
+            throw new IllegalArgumentException("maxValueBits must be in (" + SUB_BUCKET_BITS + ", 62]");
+        }
+        this.maxValueBits = maxValueBits;
+        this.counts = new AtomicLongArray(bucketCount(maxValueBits));
+    }
+
+    public void record(long value) {
+        counts.incrementAndGet(indexOf(value));
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    public int bucketCount() {
+        return counts.length();
+    }
+
+    /**
+     * Adds this histogram's counts into {@code target}, which must be {@link #bucketCount()} long.
+     */
+    public void addTo(long[] target) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += counts.get(i);
+        }
+    }
+
+    public long[] newCounts() {
+        return new long[counts.length()];
+    }
+
+    public int indexOf(long value) {
+        long v = Math.max(0, value);
+        int bit = 63 - Long.numberOfLeadingZeros(v);
+        if (bit >= maxValueBits) {
+            return counts.length() - 1;
+        }
+        if (bit < SUB_BUCKET_BITS) {
+            return (int) v;
+        }
+        return (bit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((v >>> (bit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Smallest value that lands in bucket {@code index}.
+     */
+    public static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Value at quantile {@code q} (0..1) of the merged {@code counts}, reported as the
+     * midpoint of the bucket it falls in; 0 when empty.
+     */
+    public static long valueAtQuantile(long[] counts, double q) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long low = lowerBound(i);
+                long high = i + 1 < counts.length ? lowerBound(i + 1) : low + 1;
+                return low + (high - low - 1) / 2;
+            }
+        }
+        return lowerBound(counts.length - 1);
+    }
+
+    private static int bucketCount(int maxValueBits) {
+        return (maxValueBits - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    }
+}
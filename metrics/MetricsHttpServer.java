@@ -0,0 +1,78 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import exceptions.InvalidParameterException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves {@link TripMetrics} as plain text on {@code GET /metrics} using the JDK's built-in
+ * HTTP server, on one background thread.
+ */
+public class MetricsHttpServer implements AutoCloseable {
+    private final HttpServer server;
+    private final TripMetrics metrics;
+
+    /**
+     * Binds to {@code port} on the loopback interface only; 0 picks a free port.
+     */
+    public MetricsHttpServer(TripMetrics metrics, int port) throws InvalidParameterException, IOException {
+        this(metrics, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Binds to {@code port} on {@code address}; pass a wildcard address to listen on every
+     * interface.
+     */
+    public MetricsHttpServer(TripMetrics metrics, InetAddress address, int port)
+            throws InvalidParameterException, IOException {
+        if (metrics == null) {
+            throw new InvalidParameterException("Metrics cannot be null");
+        }
+        if (address == null) {
+            throw new InvalidParameterException("Bind address cannot be null");
+        }
+        if (port < 0 || port > 65535) {
+            throw new InvalidParameterException("Port must be between 0 and 65535");
+        }
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/metrics", this::scrape);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public InetAddress getAddress() {
+        return server.getAddress().getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder text = new StringBuilder(4096);
+            metrics.appendScrape(text);
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package metrics;
+
+public enum MetricsWindow {
+    ONE_MINUTE(60), FIVE_MINUTES(5 * 60), SIXTY_MINUTES(60 * 60);
+
+    private final int seconds;
+
+    MetricsWindow(int seconds) {
+        this.seconds = seconds;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+}
@@ -0,0 +1,261 @@
+package metrics;
+
+import core.Trip;
+import core.TripProbe;
+import core.TripStatus;
+import observer.TripObserver;
+import strategy.FareStrategy;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms for the trip hot path: each transition, each fare strategy by
+ * {@code name()}, each observer class, plus rejected transitions by the status they were
+ * attempted from. Recording is a map lookup, a bucket increment and a sum add, with nothing
+ * allocated once a strategy or observer class has been seen. {@link #reset()} swaps in a fresh
+ * set of series, so a recorder racing it lands wholly in the old set or the new one.
+ * <p>
+ * Nothing is measured until {@link #enable()} installs this as the trips' probe.
+ */
+public class TripMetrics implements TripProbe, TripMetricsMXBean {
+    public static final String OBJECT_NAME = "rideshare:type=TripMetrics";
+    // Up to 2^36 ns (about 69 s) is resolved; slower calls land in the top bucket.
+    private static final int NANOS_BITS = 36;
+    private static final TripStatus[] STATUSES = TripStatus.values();
+
+    private volatile Series series = new Series();
+
+    // Latency histogram plus the exact total of what was recorded, for the summary's _sum.
+    private static final class Timing {
+        private final LogLinearHistogram histogram = new LogLinearHistogram(NANOS_BITS);
+        private final LongAdder sumNanos = new LongAdder();
+
+        private void record(long nanos) {
+            histogram.record(nanos);
+            sumNanos.add(nanos);
+        }
+    }
+
+    private static final class Series {
+        private final Timing[] transitions = new Timing[STATUSES.length];
+        private final LongAdder[] rejected = new LongAdder[STATUSES.length];
+        private final Map<String, Timing> fares = new ConcurrentHashMap<>();
+        private final Map<Class<?>, Timing> observers = new ConcurrentHashMap<>();
+
+        private Series() {
+            for (int i = 0; i < STATUSES.length; i++) {
+                transitions[i] = new Timing();
+                rejected[i] = new LongAdder();
+            }
+        }
+    }
+
+    public void enable() {
+        Trip.setProbe(this);
+    }
+
+    /**
+     * Uninstalls the probe if it is this one.
+     */
+    public void disable() {
+        if (Trip.getProbe() == this) {
+            Trip.setProbe(null);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return Trip.getProbe() == this;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        if (enabled) {
+            enable();
+        } else {
+            disable();
+        }
+    }
+
+    @Override
+    public void transitionCompleted(TripStatus target, long nanos) {
+        series.transitions[target.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void transitionRejected(TripStatus from, TripStatus target) {
+        series.rejected[from.ordinal()].increment();
+    }
+
+    @Override
+    public void fareCalculated(FareStrategy strategy, long nanos) {
+        Map<String, Timing> fares = series.fares;
+        String name = strategy.name();
+        Timing timing = fares.get(name);
+        if (timing == null) {
+            timing = fares.computeIfAbsent(name, k -> new Timing());
+        }
+        timing.record(nanos);
+    }
+
+    @Override
+    public void observerNotified(TripObserver observer, long nanos) {
+        Map<Class<?>, Timing> observers = series.observers;
+        Class<?> type = observer.getClass();
+        Timing timing = observers.get(type);
+        if (timing == null) {
+            timing = observers.computeIfAbsent(type, k -> new Timing());
+        }
+        timing.record(nanos);
+    }
+
+    public long[] transitionCounts(TripStatus target) {
+        LogLinearHistogram histogram = series.transitions[target.ordinal()].histogram;
+        long[] counts = histogram.newCounts();
+        histogram.addTo(counts);
+        return counts;
+    }
+
+    public long rejectedFrom(TripStatus from) {
+        return series.rejected[from.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getTransitionCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (TripStatus status : STATUSES) {
+            long total = 0;
+            for (long count : transitionCounts(status)) {
+                total += count;
+            }
+            result.put(status.name(), total);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getTransitionP50Nanos() {
+        return transitionQuantile(0.5);
+    }
+
+    @Override
+    public Map<String, Long> getTransitionP99Nanos() {
+        return transitionQuantile(0.99);
+    }
+
+    @Override
+    public Map<String, Long> getRejectedTransitionsByStatus() {
+        Map<String, Long> result = new TreeMap<>();
+        for (TripStatus status : STATUSES) {
+            result.put(status.name(), rejectedFrom(status));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getFareP99NanosByStrategy() {
+        Map<String, Long> result = new TreeMap<>();
+        series.fares.forEach((name, timing) -> result.put(name, quantile(timing.histogram, 0.99)));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getObserverP99NanosByClass() {
+        Map<String, Long> result = new TreeMap<>();
+        series.observers.forEach((type, timing) ->
+                result.put(type.getName(), quantile(timing.histogram, 0.99)));
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        series = new Series();
+    }
+
+    /**
+     * Registers this instance with the platform MBean server under {@link #OBJECT_NAME},
+     * replacing any earlier registration.
+     */
+    public void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        try {
+            server.registerMBean(this, name);
+        } catch (InstanceAlreadyExistsException e) {
+            server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        }
+    }
+
+    /**
+     * Appends every series in the Prometheus text exposition format.
+     */
+    public void appendScrape(StringBuilder out) {
+        Series current = series;
+        out.append("# TYPE trip_transition_nanos summary\n");
+        for (TripStatus status : STATUSES) {
+            appendSummary(out, "trip_transition_nanos", "status", status.name(),
+                    current.transitions[status.ordinal()]);
+        }
+        out.append("# TYPE trip_transition_rejected_total counter\n");
+        for (TripStatus status : STATUSES) {
+            out.append("trip_transition_rejected_total{from=\"").append(status.name()).append("\"} ")
+                    .append(current.rejected[status.ordinal()].sum()).append('\n');
+        }
+        out.append("# TYPE fare_calculation_nanos summary\n");
+        new TreeMap<>(current.fares).forEach((name, timing) ->
+                appendSummary(out, "fare_calculation_nanos", "strategy", name, timing));
+        out.append("# TYPE observer_dispatch_nanos summary\n");
+        Map<String, Timing> byClass = new TreeMap<>();
+        current.observers.forEach((type, timing) -> byClass.put(type.getName(), timing));
+        byClass.forEach((name, timing) ->
+                appendSummary(out, "observer_dispatch_nanos", "observer", name, timing));
+    }
+
+    private Map<String, Long> transitionQuantile(double q) {
+        Map<String, Long> result = new TreeMap<>();
+        Series current = series;
+        for (TripStatus status : STATUSES) {
+            result.put(status.name(), quantile(current.transitions[status.ordinal()].histogram, q));
+        }
+        return result;
+    }
+
+    private static long quantile(LogLinearHistogram histogram, double q) {
+        long[] counts = histogram.newCounts();
+        histogram.addTo(counts);
+        return LogLinearHistogram.valueAtQuantile(counts, q);
+    }
+
+    private static void appendSummary(StringBuilder out, String metric, String label, String value,
+                                      Timing timing) {
+        long[] counts = timing.histogram.newCounts();
+        timing.histogram.addTo(counts);
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        long sum = timing.sumNanos.sum();
+        for (double q : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            out.append(metric).append('{').append(label).append("=\"").append(escape(value))
+                    .append("\",quantile=\"").append(q).append("\"} ")
+                    .append(LogLinearHistogram.valueAtQuantile(counts, q)).append('\n');
+        }
+        out.append(metric).append("_count{").append(label).append("=\"").append(escape(value)).append("\"} ")
+                .append(total).append('\n');
+        out.append(metric).append("_sum{").append(label).append("=\"").append(escape(value)).append("\"} ")
+                .append(sum).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
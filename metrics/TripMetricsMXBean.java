@@ -0,0 +1,27 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link TripMetrics}. Latencies are in nanoseconds; maps are keyed by trip
+ * status, fare strategy name or observer class.
+ */
+public interface TripMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    Map<String, Long> getTransitionCounts();
+
+    Map<String, Long> getTransitionP50Nanos();
+
+    Map<String, Long> getTransitionP99Nanos();
+
+    Map<String, Long> getRejectedTransitionsByStatus();
+
+    Map<String, Long> getFareP99NanosByStrategy();
+
+    Map<String, Long> getObserverP99NanosByClass();
+
+    void reset();
+}
@@ -0,0 +1,74 @@
+package metrics;
+
+/**
+ * Point-in-time aggregate of one {@link MetricsWindow}. Fare percentiles are in dollars; rates
+ * are over {@link #getCoveredSeconds()}, which can be a little under the window's length.
+ */
+public final class WindowSnapshot {
+    private final MetricsWindow window;
+    private final long coveredSeconds;
+    private final long requested;
+    private final long completed;
+    private final long cancelled;
+    private final long revenueCents;
+    private final long[] fareCounts;
+
+    WindowSnapshot(MetricsWindow window, long coveredSeconds, long requested, long completed, long cancelled,
+                   long revenueCents, long[] fareCounts) {
+        this.window = window;
+        this.coveredSeconds = coveredSeconds;
+        this.requested = requested;
+        this.completed = completed;
+        this.cancelled = cancelled;
+        this.revenueCents = revenueCents;
+        this.fareCounts = fareCounts;
+    }
+
+    public MetricsWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Seconds of history the counts come from: the full buckets plus the elapsed part of the
+     * newest one.
+     */
+    public long getCoveredSeconds() {
+        return coveredSeconds;
+    }
+
+    public long getRequested() {
+        return requested;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    public double getRevenue() {
+        return revenueCents / 100.0;
+    }
+
+    public double getRevenuePerMinute() {
+        return getRevenue() * 60.0 / coveredSeconds;
+    }
+
+    public double getCompletionsPerSecond() {
+        return (double) completed / coveredSeconds;
+    }
+
+    public double getFarePercentile(double quantile) {
+        return LogLinearHistogram.valueAtQuantile(fareCounts, quantile) / 100.0;
+    }
+
+    public double getFareP50() {
+        return getFarePercentile(0.50);
+    }
+
+    public double getFareP99() {
+        return getFarePercentile(0.99);
+    }
+}
@@ -0,0 +1,139 @@
+package metrics;
+
+import core.TripEvent;
+import observer.TripObserver;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Sliding-window trip metrics over the last 1, 5 and 60 minutes in constant memory.
+ * <p>
+ * Events land in two rings of time buckets keyed by the event's own timestamp: 60 one-second
+ * buckets (serving the 1-minute window) and 60 one-minute buckets (serving 5 and 60 minutes).
+ * A bucket whose slot comes round again is cleared by the first writer to see it. Reads merge
+ * at most 60 buckets, independent of the event rate.
+ * <p>
+ * The newest bucket of a window is still filling, so a window covers its older full buckets
+ * plus the elapsed part of the current one, and rates are taken over that covered time.
+ */
+public class WindowedTripMetrics implements TripObserver {
+    private static final int SLOTS = 60;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // Fares up to 2^24 cents (about $167k) are resolved; anything higher is clamped.
+    private static final int FARE_CENTS_BITS = 24;
+
+    private static final class Bucket {
+        private volatile long epoch = Long.MIN_VALUE;
+        private final LongAdder requested = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder revenueCents = new LongAdder();
+        private final LogLinearHistogram fares = new LogLinearHistogram(FARE_CENTS_BITS);
+
+        private boolean claim(long target) {
+            long current = epoch;
+            if (current == target) {
+                return true;
+            }
+            if (current > target) {
+                return false; // older than the ring remembers
+            }
+            synchronized (this) {
+                if (epoch < target) {
+                    requested.reset();
+                    completed.reset();
+                    cancelled.reset();
+                    revenueCents.reset();
+                    fares.reset();
+                    epoch = target;
+                }
+                return epoch == target;
+            }
+        }
+    }
+
+    private final Bucket[] seconds = newRing();
+    private final Bucket[] minutes = newRing();
+    private final LongSupplier clockNanos;
+
+    public WindowedTripMetrics() {
+        this(() -> TripEvent.toEpochNanos(Instant.now()));
+    }
+
+    public WindowedTripMetrics(LongSupplier clockNanos) {
+        this.clockNanos = clockNanos;
+    }
+
+    @Override
+    public void onTripEvent(TripEvent event) {
+        long second = Math.floorDiv(event.getEpochNanos(), NANOS_PER_SECOND);
+        record(seconds, second, event);
+        record(minutes, Math.floorDiv(second, 60), event);
+    }
+
+    public WindowSnapshot snapshot(MetricsWindow window) {
+        long nowSecond = Math.floorDiv(clockNanos.getAsLong(), NANOS_PER_SECOND);
+        if (window == MetricsWindow.ONE_MINUTE) {
+            return merge(window, seconds, nowSecond, SLOTS, SLOTS);
+        }
+        int span = window.getSeconds() / 60;
+        long covered = (span - 1) * 60L + Math.floorMod(nowSecond, 60) + 1;
+        return merge(window, minutes, Math.floorDiv(nowSecond, 60), span, covered);
+    }
+
+    private static void record(Bucket[] ring, long epoch, TripEvent event) {
+        Bucket bucket = ring[Math.floorMod(epoch, SLOTS)];
+        if (!bucket.claim(epoch)) {
+            return;
+        }
+        switch (event.getType()) {
+            case REQUESTED:
+                bucket.requested.increment();
+                break;
+            case COMPLETED:
+                bucket.completed.increment();
+                if (event.hasFare()) {
+                    long cents = Math.round(event.getFareAmount() * 100.0);
+                    bucket.revenueCents.add(cents);
+                    bucket.fares.record(cents);
+                }
+                break;
+            case CANCELLED:
+                bucket.cancelled.increment();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static WindowSnapshot merge(MetricsWindow window, Bucket[] ring, long now, int span,
+                                        long coveredSeconds) {
+        long requested = 0;
+        long completed = 0;
+        long cancelled = 0;
+        long revenueCents = 0;
+        long[] fareCounts = ring[0].fares.newCounts();
+        for (Bucket bucket : ring) {
+            long epoch = bucket.epoch;
+            if (epoch > now - span && epoch <= now) {
+                requested += bucket.requested.sum();
+                completed += bucket.completed.sum();
+                cancelled += bucket.cancelled.sum();
+                revenueCents += bucket.revenueCents.sum();
+                bucket.fares.addTo(fareCounts);
+            }
+        }
+        return new WindowSnapshot(window, coveredSeconds, requested, completed, cancelled, revenueCents,
+                fareCounts);
+    }
+
+    private static Bucket[] newRing() {
+        Bucket[] ring = new Bucket[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            ring[i] = new Bucket();
+        }
+        return ring;
+    }
+}
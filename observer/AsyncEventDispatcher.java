@@ -0,0 +1,263 @@
+package observer;
+
+import core.Trip;
+import core.TripEvent;
+import core.TripId;
+import core.TripProbe;
+import exceptions.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands trip events to observers on background consumer threads.
+ * <p>
+ * Events are partitioned into lanes by tripId hash; each lane is a bounded ring buffer
+ * drained in batches by a single consumer, so events of one trip are delivered in the
+ * order they were published. Under {@link BackpressurePolicy#CALLER_RUNS} an overflowing
+ * event is delivered inline and may overtake events of the same trip still queued.
+ */
+public class AsyncEventDispatcher implements EventDispatcher, AutoCloseable {
+    private static final class Envelope {
+        private final TripEvent event;
+        private final List<TripObserver> observers;
+
+        private Envelope(TripEvent event, List<TripObserver> observers) {
+            this.event = event;
+            this.observers = observers;
+        }
+    }
+
+    private final class Lane implements Runnable {
+        private final ArrayBlockingQueue<Envelope> ring;
+        private final List<Envelope> batch;
+        private final AtomicLong published = new AtomicLong();
+        // Publishers between their closed check and their enqueue; consumers outlive them.
+        private final AtomicInteger publishing = new AtomicInteger();
+        private long completed;
+
+        private Lane(int capacity) {
+            this.ring = new ArrayBlockingQueue<>(capacity);
+            this.batch = new ArrayList<>(maxBatch);
+        }
+
+        private void publish(Envelope envelope) throws InterruptedException {
+            published.incrementAndGet();
+            switch (policy) {
+                case BLOCK:
+                    ring.put(envelope);
+                    break;
+                case DROP_OLDEST:
+                    while (!ring.offer(envelope)) {
+                        if (ring.poll() != null) {
+                            dropped.incrementAndGet();
+                            markCompleted(1);
+                        }
+                    }
+                    break;
+                case CALLER_RUNS:
+                    if (!ring.offer(envelope)) {
+                        try {
+                            deliver(envelope);
+                        } finally {
+                            markCompleted(1);
+                        }
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Envelope first = ring.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        // Once closed with no publisher in flight, nothing can be queued again.
+                        if (closed && publishing.get() == 0 && ring.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    ring.drainTo(batch, maxBatch - 1);
+                    for (int i = 0; i < batch.size(); i++) {
+                        deliver(batch.get(i));
+                    }
+                    int delivered = batch.size();
+                    batch.clear();
+                    markCompleted(delivered);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private synchronized void markCompleted(int count) {
+            completed += count;
+            notifyAll();
+        }
+
+        private synchronized void awaitCompleted(long target) throws InterruptedException {
+            while (completed < target) {
+                wait();
+            }
+        }
+    }
+
+    private static final long IDLE_POLL_MILLIS = 10;
+
+    private final BackpressurePolicy policy;
+    private final int maxBatch;
+    private final Lane[] lanes;
+    private final Thread[] consumers;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean closed;
+
+    public AsyncEventDispatcher(int lanes, int capacityPerLane, int maxBatch, BackpressurePolicy policy)
+            throws InvalidParameterException {
+        this(lanes, capacityPerLane, maxBatch, policy, Thread.ofVirtual().name("trip-dispatch-", 0).factory());
+    }
+
+    public AsyncEventDispatcher(int lanes, int capacityPerLane, int maxBatch, BackpressurePolicy policy,
+                                ThreadFactory threadFactory) throws InvalidParameterException {
+        if (lanes <= 0) {
+            throw new InvalidParameterException("Lane count must be greater than 0");
+        }
+        if (capacityPerLane <= 0) {
+            throw new InvalidParameterException("Lane capacity must be greater than 0");
+        }
+        if (maxBatch <= 0) {
+            throw new InvalidParameterException("Batch size must be greater than 0");
+        }
+        if (policy == null) {
+            throw new InvalidParameterException("Backpressure policy cannot be null");
+        }
+        if (threadFactory == null) {
+            throw new InvalidParameterException("Thread factory cannot be null");
+        }
+        this.policy = policy;
+        this.maxBatch = maxBatch;
+        this.lanes = new Lane[lanes];
+        this.consumers = new Thread[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(capacityPerLane);
+            this.consumers[i] = threadFactory.newThread(this.lanes[i]);
+            this.consumers[i].start();
+        }
+    }
+
+    @Override
+    public void dispatch(TripEvent event, List<TripObserver> observers) {
+        if (observers.isEmpty()) {
+            return;
+        }
+        Lane lane = laneFor(event);
+        lane.publishing.incrementAndGet();
+        try {
+            if (closed) {
+                rejected.incrementAndGet();
+                return;
+            }
+            Envelope envelope = new Envelope(event, observers);
+            try {
+                lane.publish(envelope);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                deliver(envelope);
+                lane.markCompleted(1);
+            }
+        } finally {
+            lane.publishing.decrementAndGet();
+        }
+    }
+
+    /**
+     * Blocks until every event published before this call has been delivered or dropped.
+     */
+    public void flush() throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.awaitCompleted(lane.published.get());
+        }
+    }
+
+    /**
+     * Stops accepting new events, drains what is queued and joins the consumers. Events
+     * dispatched after close are rejected and counted in {@link #getRejectedEvents()}. An
+     * interrupt while waiting does not cut closing short; the flag is restored afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        for (Thread consumer : consumers) {
+            interrupted |= joinUninterruptibly(consumer);
+        }
+        // Publishers that raced with close may have queued after the consumers exited.
+        for (Lane lane : lanes) {
+            Envelope envelope;
+            while ((envelope = lane.ring.poll()) != null) {
+                deliver(envelope);
+                lane.markCompleted(1);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Waits out interrupts so closing always finishes; reports whether one arrived.
+    private static boolean joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                return interrupted;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+    }
+
+    public long getDroppedEvents() {
+        return dropped.get();
+    }
+
+    public long getObserverFailures() {
+        return failures.get();
+    }
+
+    public long getRejectedEvents() {
+        return rejected.get();
+    }
+
+    // Hashes the binary id; only events built from a string id fall back to the string's hash.
+    private Lane laneFor(TripEvent event) {
+        TripId id = event.getId();
+        int h = id != null ? id.hashCode() : event.getTripId().hashCode();
+        return lanes[Math.floorMod(h ^ (h >>> 16), lanes.length)];
+    }
+
+    private void deliver(Envelope envelope) {
+        List<TripObserver> observers = envelope.observers;
+        TripProbe probe = Trip.getProbe();
+        for (int i = 0; i < observers.size(); i++) {
+            try {
+                EventDispatcher.deliver(observers.get(i), envelope.event, probe);
+            } catch (RuntimeException e) {
+                // An observer must not take the consumer lane down with it.
+                failures.incrementAndGet();
+            }
+        }
+    }
+}
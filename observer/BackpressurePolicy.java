@@ -0,0 +1,5 @@
+package observer;
+
+public enum BackpressurePolicy {
+    BLOCK, DROP_OLDEST, CALLER_RUNS
+}
@@ -1,31 +1,108 @@
 package observer;
 
 import core.TripEvent;
+import core.TripEventType;
+import exceptions.InvalidParameterException;
+import logging.LogAppender;
+import logging.LogFormat;
+import logging.LogText;
+import logging.LogThrottle;
 
-public class DriverNotifier implements TripObserver {
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+public class DriverNotifier implements IoBoundObserver {
     private final String driverName;
+    private final LogAppender appender;
+    private final LogFormat format;
+    private final LogThrottle throttle;
+    private final PhoneGateway gateway;
 
     public DriverNotifier(String driverName) {
         this.driverName = driverName;
+        this.appender = LogAppender.STDOUT;
+        this.format = LogFormat.TEXT;
+        this.throttle = new LogThrottle();
+        this.gateway = null;
+    }
+
+    /**
+     * Pushes each message to the driver's phone through {@code gateway} instead of logging it.
+     */
+    public DriverNotifier(String driverName, PhoneGateway gateway) throws InvalidParameterException {
+        if (gateway == null) {
+            throw new InvalidParameterException("Phone gateway cannot be null");
+        }
+        this.driverName = driverName;
+        this.appender = LogAppender.STDOUT;
+        this.format = LogFormat.TEXT;
+        this.throttle = new LogThrottle();
+        this.gateway = gateway;
+    }
+
+    public DriverNotifier(String driverName, LogAppender appender, LogFormat format, LogThrottle throttle)
+            throws InvalidParameterException {
+        if (appender == null || format == null || throttle == null) {
+            throw new InvalidParameterException("Appender, format and throttle cannot be null");
+        }
+        this.driverName = driverName;
+        this.appender = appender;
+        this.format = format;
+        this.throttle = throttle;
+        this.gateway = null;
+    }
+
+    // Only pushing to a phone blocks; the appenders never do.
+    @Override
+    public boolean blocksOnIo() {
+        return gateway != null;
     }
 
     @Override
     public void onTripEvent(TripEvent event) {
+        // Drivers hear nothing about a trip before it is accepted.
+        if (event.getType() == TripEventType.REQUESTED || !throttle.admit(event.getType())) {
+            return;
+        }
+        if (gateway != null) {
+            push(event);
+            return;
+        }
+        StringBuilder line = appender.claim();
+        if (line == null) {
+            return;
+        }
+        if (format == LogFormat.JSON_LINES) {
+            LogText.openJsonEvent(line, event).append(",\"app\":\"driver\"");
+            LogText.appendJsonString(line.append(",\"user\":"), driverName).append(",\"message\":\"");
+            int message = line.length();
+            LogText.escapeJsonFrom(appendMessage(line, event), message).append("\"}");
+        } else {
+            appendMessage(line.append("DRIVER APP (").append(driverName).append("): "), event);
+        }
+        appender.publish(line);
+    }
+
+    private void push(TripEvent event) {
+        try {
+            gateway.push(driverName, appendMessage(new StringBuilder(64), event).toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static StringBuilder appendMessage(StringBuilder line, TripEvent event) {
         switch (event.getType()) {
             case ACCEPTED:
-                System.out.println("DRIVER APP (" + driverName + "): You accepted trip "
-                        + event.getTripId() + ". Navigate to pickup.");
-                break;
+                return LogText.appendTripId(line.append("You accepted trip "), event).append(". Navigate to pickup.");
             case STARTED:
-                System.out.println("DRIVER APP (" + driverName + "): Trip started. Drive safely.");
-                break;
+                return line.append("Trip started. Drive safely.");
             case COMPLETED:
-                System.out.println("DRIVER APP (" + driverName + "): Trip completed. Earnings: $"
-                        + String.format("%.2f", event.getFare()));
-                break;
+                return LogText.appendMoney(line.append("Trip completed. Earnings: $"), event.getFareAmount());
             case CANCELLED:
-                System.out.println("DRIVER APP (" + driverName + "): Trip was cancelled.");
-                break;
+                return line.append("Trip was cancelled.");
+            default:
+                return line;
         }
     }
 }
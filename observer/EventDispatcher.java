@@ -0,0 +1,35 @@
+package observer;
+
+import core.Trip;
+import core.TripEvent;
+import core.TripProbe;
+
+import java.util.List;
+
+public interface EventDispatcher {
+    EventDispatcher SYNCHRONOUS = (event, observers) -> {
+        TripProbe probe = Trip.getProbe();
+        for (int i = 0; i < observers.size(); i++) {
+            deliver(observers.get(i), event, probe);
+        }
+    };
+
+    /**
+     * Delivers {@code event} to {@code observers}. The list is a snapshot owned by the
+     * caller's trip and must not be mutated; it is safe to hold on to it after returning.
+     */
+    void dispatch(TripEvent event, List<TripObserver> observers);
+
+    /**
+     * Calls one observer, timing it when a probe is installed.
+     */
+    static void deliver(TripObserver observer, TripEvent event, TripProbe probe) {
+        if (probe == null) {
+            observer.onTripEvent(event);
+            return;
+        }
+        long started = System.nanoTime();
+        observer.onTripEvent(event);
+        probe.observerNotified(observer, System.nanoTime() - started);
+    }
+}
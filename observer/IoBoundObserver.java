@@ -0,0 +1,16 @@
+package observer;
+
+/**
+ * Marks an observer whose callback may block on I/O. {@link VirtualThreadDispatcher} runs these
+ * on virtual threads instead of the transitioning thread while {@link #blocksOnIo()} is true;
+ * other dispatchers call them inline.
+ */
+public interface IoBoundObserver extends TripObserver {
+    /**
+     * Whether this instance actually blocks; one that only formats into a buffer can say no
+     * and be called inline.
+     */
+    default boolean blocksOnIo() {
+        return true;
+    }
+}
@@ -0,0 +1,14 @@
+package observer;
+
+import core.TripEvent;
+
+@FunctionalInterface
+public interface ObserverFailureHandler {
+    ObserverFailureHandler IGNORE = (observer, event, cause) -> {
+    };
+
+    /**
+     * Called on the delivering thread when an observer throws, times out or is rejected.
+     */
+    void onFailure(TripObserver observer, TripEvent event, Throwable cause);
+}
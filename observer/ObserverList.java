@@ -0,0 +1,51 @@
+package observer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copy-on-write observer set. Writers publish a new immutable snapshot; readers grab the
+ * current one with a single volatile read, so notification neither locks nor allocates.
+ * An observer added or removed mid-notify only affects the next event.
+ */
+public final class ObserverList {
+    private static final TripObserver[] NONE = new TripObserver[0];
+
+    private TripObserver[] observers = NONE;
+    private volatile List<TripObserver> snapshot = Collections.emptyList();
+
+    public synchronized void add(TripObserver observer) {
+        TripObserver[] next = Arrays.copyOf(observers, observers.length + 1);
+        next[observers.length] = observer;
+        publish(next);
+    }
+
+    public synchronized boolean remove(TripObserver observer) {
+        for (int i = 0; i < observers.length; i++) {
+            if (observer == null ? observers[i] == null : observer.equals(observers[i])) {
+                TripObserver[] next = new TripObserver[observers.length - 1];
+                System.arraycopy(observers, 0, next, 0, i);
+                System.arraycopy(observers, i + 1, next, i, next.length - i);
+                publish(next);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<TripObserver> snapshot() {
+        return snapshot;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    private void publish(TripObserver[] next) {
+        observers = next;
+        snapshot = next.length == 0
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(Arrays.asList(next));
+    }
+}
@@ -0,0 +1,12 @@
+package observer;
+
+import java.io.IOException;
+
+/**
+ * Push-notification channel to a rider's or driver's phone. Calls block until the gateway
+ * has accepted the message.
+ */
+@FunctionalInterface
+public interface PhoneGateway {
+    void push(String recipient, String message) throws IOException;
+}
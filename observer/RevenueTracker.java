@@ -3,26 +3,86 @@ package observer;
 import core.TripEvent;
 import core.TripEventType;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe revenue totals, kept in exact cents on striped {@link LongAdder}s so one
+ * tracker can be shared by every trip and dispatcher thread. Reads never block writers.
+ */
 public class RevenueTracker implements TripObserver {
-    private double totalRevenue = 0.0;
-    private int completedTrips = 0;
+    private static final String UNKNOWN = "unknown";
+
+    private static final class Bucket {
+        private final LongAdder cents = new LongAdder();
+        private final LongAdder trips = new LongAdder();
+
+        private void add(long fareCents) {
+            cents.add(fareCents);
+            trips.increment();
+        }
+    }
+
+    private final Bucket total = new Bucket();
+    private final Map<String, Bucket> byStrategy = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> byDriver = new ConcurrentHashMap<>();
 
     @Override
     public void onTripEvent(TripEvent event) {
-        if (event.getType() == TripEventType.COMPLETED) {
-            totalRevenue += event.getFare();
-            completedTrips++;
-            System.out.println("REVENUE: +$" + String.format("%.2f", event.getFare())
-                    + " (total revenue=$" + String.format("%.2f", totalRevenue)
-                    + ", trips=" + completedTrips + ")");
+        if (event.getType() == TripEventType.COMPLETED && event.hasFare()) {
+            long fareCents = Math.round(event.getFareAmount() * 100.0);
+            total.add(fareCents);
+            bucket(byStrategy, event.getFareStrategyName()).add(fareCents);
+            bucket(byDriver, event.getDriverName()).add(fareCents);
         }
     }
 
     public double getTotalRevenue() {
-        return totalRevenue;
+        return total.cents.sum() / 100.0;
+    }
+
+    public long getTotalRevenueCents() {
+        return total.cents.sum();
     }
 
     public int getCompletedTrips() {
-        return completedTrips;
+        return (int) total.trips.sum();
+    }
+
+    public Map<String, Double> getRevenueByStrategy() {
+        return revenue(byStrategy);
+    }
+
+    public Map<String, Double> getRevenueByDriver() {
+        return revenue(byDriver);
+    }
+
+    public Map<String, Long> getCompletedTripsByStrategy() {
+        return trips(byStrategy);
+    }
+
+    public Map<String, Long> getCompletedTripsByDriver() {
+        return trips(byDriver);
+    }
+
+    private static Bucket bucket(Map<String, Bucket> buckets, String key) {
+        String name = key != null ? key : UNKNOWN;
+        Bucket bucket = buckets.get(name);
+        return bucket != null ? bucket : buckets.computeIfAbsent(name, k -> new Bucket());
+    }
+
+    private static Map<String, Double> revenue(Map<String, Bucket> buckets) {
+        Map<String, Double> result = new HashMap<>();
+        buckets.forEach((key, bucket) -> result.put(key, bucket.cents.sum() / 100.0));
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Map<String, Long> trips(Map<String, Bucket> buckets) {
+        Map<String, Long> result = new HashMap<>();
+        buckets.forEach((key, bucket) -> result.put(key, bucket.trips.sum()));
+        return Collections.unmodifiableMap(result);
     }
 }
@@ -1,34 +1,108 @@
 package observer;
 
 import core.TripEvent;
+import exceptions.InvalidParameterException;
+import logging.LogAppender;
+import logging.LogFormat;
+import logging.LogText;
+import logging.LogThrottle;
 
-public class RiderNotifier implements TripObserver {
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+public class RiderNotifier implements IoBoundObserver {
     private final String riderName;
+    private final LogAppender appender;
+    private final LogFormat format;
+    private final LogThrottle throttle;
+    private final PhoneGateway gateway;
 
     public RiderNotifier(String riderName) {
         this.riderName = riderName;
+        this.appender = LogAppender.STDOUT;
+        this.format = LogFormat.TEXT;
+        this.throttle = new LogThrottle();
+        this.gateway = null;
+    }
+
+    /**
+     * Pushes each message to the rider's phone through {@code gateway} instead of logging it.
+     */
+    public RiderNotifier(String riderName, PhoneGateway gateway) throws InvalidParameterException {
+        if (gateway == null) {
+            throw new InvalidParameterException("Phone gateway cannot be null");
+        }
+        this.riderName = riderName;
+        this.appender = LogAppender.STDOUT;
+        this.format = LogFormat.TEXT;
+        this.throttle = new LogThrottle();
+        this.gateway = gateway;
+    }
+
+    public RiderNotifier(String riderName, LogAppender appender, LogFormat format, LogThrottle throttle)
+            throws InvalidParameterException {
+        if (appender == null || format == null || throttle == null) {
+            throw new InvalidParameterException("Appender, format and throttle cannot be null");
+        }
+        this.riderName = riderName;
+        this.appender = appender;
+        this.format = format;
+        this.throttle = throttle;
+        this.gateway = null;
+    }
+
+    // Only pushing to a phone blocks; the appenders never do.
+    @Override
+    public boolean blocksOnIo() {
+        return gateway != null;
     }
 
     @Override
     public void onTripEvent(TripEvent event) {
+        if (!throttle.admit(event.getType())) {
+            return;
+        }
+        if (gateway != null) {
+            push(event);
+            return;
+        }
+        StringBuilder line = appender.claim();
+        if (line == null) {
+            return;
+        }
+        if (format == LogFormat.JSON_LINES) {
+            LogText.openJsonEvent(line, event).append(",\"app\":\"rider\"");
+            LogText.appendJsonString(line.append(",\"user\":"), riderName).append(",\"message\":\"");
+            int message = line.length();
+            LogText.escapeJsonFrom(appendMessage(line, event), message).append("\"}");
+        } else {
+            appendMessage(line.append("RIDER APP (").append(riderName).append("): "), event);
+        }
+        appender.publish(line);
+    }
+
+    private void push(TripEvent event) {
+        try {
+            gateway.push(riderName, appendMessage(new StringBuilder(64), event).toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static StringBuilder appendMessage(StringBuilder line, TripEvent event) {
         switch (event.getType()) {
             case REQUESTED:
-                System.out.println("RIDER APP (" + riderName + "): Trip requested. Finding a driver...");
-                break;
+                return line.append("Trip requested. Finding a driver...");
             case ACCEPTED:
-                System.out.println("RIDER APP (" + riderName + "): Driver "
-                        + event.getDriverName() + " accepted your trip.");
-                break;
+                return line.append("Driver ").append(event.getDriverName()).append(" accepted your trip.");
             case STARTED:
-                System.out.println("RIDER APP (" + riderName + "): Trip started. Enjoy the ride!");
-                break;
+                return line.append("Trip started. Enjoy the ride!");
             case COMPLETED:
-                System.out.println("RIDER APP (" + riderName + "): Trip completed. Total: $"
-                        + String.format("%.2f", event.getFare()));
-                break;
+                return LogText.appendMoney(line.append("Trip completed. Total: $"), event.getFareAmount());
             case CANCELLED:
-                System.out.println("RIDER APP (" + riderName + "): Trip cancelled.");
-                break;
+                return line.append("Trip cancelled.");
+            default:
+                return line;
         }
     }
 }
@@ -0,0 +1,66 @@
+package observer;
+
+import exceptions.InvalidParameterException;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for the phone gateway: each push sleeps for the configured latency plus up
+ * to {@code jitterMillis}, then fails with probability {@code failureRate}. Tracks the peak
+ * number of pushes in flight at once.
+ */
+public class StubPhoneGateway implements PhoneGateway {
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate;
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong peakInFlight = new AtomicLong();
+    private final LongAdder delivered = new LongAdder();
+
+    public StubPhoneGateway(long latencyMillis, long jitterMillis, double failureRate)
+            throws InvalidParameterException {
+        if (latencyMillis < 0 || jitterMillis < 0) {
+            throw new InvalidParameterException("Latency and jitter cannot be negative");
+        }
+        if (!(failureRate >= 0 && failureRate <= 1)) {
+            throw new InvalidParameterException("Failure rate must be between 0 and 1");
+        }
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public void push(String recipient, String message) throws IOException {
+        long now = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(now, Math::max);
+        try {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Thread.sleep(latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0));
+            if (failureRate > 0 && random.nextDouble() < failureRate) {
+                throw new IOException("Gateway rejected push to " + recipient);
+            }
+            delivered.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Push to " + recipient + " interrupted", e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+}
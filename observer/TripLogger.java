@@ -1,14 +1,53 @@
 package observer;
 
 import core.TripEvent;
+import exceptions.InvalidParameterException;
+import logging.LogAppender;
+import logging.LogFormat;
+import logging.LogText;
+import logging.LogThrottle;
 
 public class TripLogger implements TripObserver {
+    private final LogAppender appender;
+    private final LogFormat format;
+    private final LogThrottle throttle;
+
+    public TripLogger() {
+        this.appender = LogAppender.STDOUT;
+        this.format = LogFormat.TEXT;
+        this.throttle = new LogThrottle();
+    }
+
+    public TripLogger(LogAppender appender, LogFormat format, LogThrottle throttle) throws InvalidParameterException {
+        if (appender == null || format == null || throttle == null) {
+            throw new InvalidParameterException("Appender, format and throttle cannot be null");
+        }
+        this.appender = appender;
+        this.format = format;
+        this.throttle = throttle;
+    }
 
     @Override
     public void onTripEvent(TripEvent event) {
-        System.out.println("LOG: [" + event.getTimestamp() + "] Trip " + event.getTripId()
-                + " -> " + event.getType()
-                + (event.getDriverName() != null ? (" (driver=" + event.getDriverName() + ")") : "")
-                + (event.getFare() != null ? (" (fare=$" + String.format("%.2f", event.getFare()) + ")") : ""));
+        if (!throttle.admit(event.getType())) {
+            return;
+        }
+        StringBuilder line = appender.claim();
+        if (line == null) {
+            return;
+        }
+        if (format == LogFormat.JSON_LINES) {
+            LogText.openJsonEvent(line, event).append('}');
+        } else {
+            LogText.appendTimestamp(line.append("LOG: ["), event.getEpochNanos());
+            LogText.appendTripId(line.append("] Trip "), event).append(" -> ").append(event.getType().name());
+            if (event.getDriverName() != null) {
+                line.append(" (driver=").append(event.getDriverName()).append(')');
+            }
+            if (event.hasFare()) {
+                LogText.appendMoney(line.append(" (fare=$"), event.getFareAmount()).append(')');
+            }
+        }
+        appender.publish(line);
     }
 }
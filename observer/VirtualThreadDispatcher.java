@@ -0,0 +1,304 @@
+package observer;
+
+import core.Trip;
+import core.TripEvent;
+import core.TripProbe;
+import exceptions.InvalidParameterException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs each call to an {@link IoBoundObserver} that {@linkplain IoBoundObserver#blocksOnIo()
+ * blocks on I/O} on its own virtual thread so notification I/O never stalls the transitioning
+ * thread; every other observer is called inline.
+ * <p>
+ * Each observer instance has its own concurrency limit (a call past the limit parks its
+ * virtual thread until a slot frees), and each call has a deadline measured from
+ * dispatch, after which its thread is interrupted. At most {@code maxInFlight} calls may be
+ * outstanding; beyond that new calls are rejected rather than queued. Timeouts, rejections
+ * and exceptions are reported to the {@link ObserverFailureHandler}.
+ * <p>
+ * I/O-bound calls for one trip run concurrently, so their relative order is not preserved.
+ */
+public class VirtualThreadDispatcher implements EventDispatcher, AutoCloseable {
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int TIMED_OUT = 2;
+
+    private final int defaultConcurrency;
+    private final long timeoutMillis;
+    private final int maxInFlight;
+    private final ObserverFailureHandler failureHandler;
+    private final Map<Class<?>, Integer> typeLimits = new ConcurrentHashMap<>();
+    // Only observers with calls in flight have an entry, so finished observers are not retained.
+    private final Map<TripObserver, Limit> limits = new ConcurrentHashMap<>();
+    private final Object idle = new Object();
+    private final ScheduledThreadPoolExecutor watchdog;
+    private final AtomicLong inFlight = new AtomicLong();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean closed;
+    // Only changed under the idle monitor; finishing calls read it to skip signalling nobody.
+    private volatile int flushWaiters;
+
+    private static final class Limit {
+        private final Semaphore permits;
+        private int users;
+
+        private Limit(int permits) {
+            this.permits = new Semaphore(permits);
+        }
+    }
+
+    private final class Call implements Runnable {
+        private final TripObserver observer;
+        private final TripEvent event;
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        private volatile Thread thread;
+        private ScheduledFuture<?> deadline;
+
+        private Call(TripObserver observer, TripEvent event) {
+            this.observer = observer;
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            Semaphore limit = acquireLimit(observer);
+            boolean acquired = false;
+            Throwable failure = null;
+            try {
+                if (state.get() == RUNNING) {
+                    limit.acquire();
+                    acquired = true;
+                    EventDispatcher.deliver(observer, event, Trip.getProbe());
+                }
+            } catch (InterruptedException e) {
+                failure = e;
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            } finally {
+                if (acquired) {
+                    limit.release();
+                }
+                releaseLimit(observer);
+            }
+            finish(failure);
+        }
+
+        private void expire() {
+            if (state.compareAndSet(RUNNING, TIMED_OUT)) {
+                Thread running = thread;
+                if (running != null) {
+                    running.interrupt();
+                }
+            }
+        }
+
+        private void finish(Throwable failure) {
+            ScheduledFuture<?> timer = deadline;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (!state.compareAndSet(RUNNING, DONE)) {
+                Thread.interrupted();
+                timeouts.increment();
+                fail(observer, event, new TimeoutException("Observer " + observer.getClass().getName()
+                        + " did not finish within " + timeoutMillis + " ms"));
+            } else if (failure != null) {
+                fail(observer, event, failure);
+            } else {
+                completed.increment();
+            }
+            leave();
+        }
+    }
+
+    public VirtualThreadDispatcher(int defaultConcurrency, long timeoutMillis, int maxInFlight,
+                                   ObserverFailureHandler failureHandler) throws InvalidParameterException {
+        if (defaultConcurrency <= 0) {
+            throw new InvalidParameterException("Concurrency limit must be greater than 0");
+        }
+        if (timeoutMillis <= 0) {
+            throw new InvalidParameterException("Timeout must be greater than 0");
+        }
+        if (maxInFlight <= 0) {
+            throw new InvalidParameterException("Max in-flight calls must be greater than 0");
+        }
+        if (failureHandler == null) {
+            throw new InvalidParameterException("Failure handler cannot be null");
+        }
+        this.defaultConcurrency = defaultConcurrency;
+        this.timeoutMillis = timeoutMillis;
+        this.maxInFlight = maxInFlight;
+        this.failureHandler = failureHandler;
+        this.watchdog = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "observer-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Caps concurrent calls to each observer of exactly {@code type}. Set limits before the
+     * first event for that type is dispatched.
+     */
+    public void setConcurrencyLimit(Class<? extends TripObserver> type, int limit) throws InvalidParameterException {
+        if (type == null) {
+            throw new InvalidParameterException("Observer type cannot be null");
+        }
+        if (limit <= 0) {
+            throw new InvalidParameterException("Concurrency limit must be greater than 0");
+        }
+        typeLimits.put(type, limit);
+    }
+
+    @Override
+    public void dispatch(TripEvent event, List<TripObserver> observers) {
+        TripProbe probe = Trip.getProbe();
+        for (int i = 0; i < observers.size(); i++) {
+            TripObserver observer = observers.get(i);
+            if (observer instanceof IoBoundObserver io && io.blocksOnIo()) {
+                submit(observer, event);
+            } else {
+                EventDispatcher.deliver(observer, event, probe);
+            }
+        }
+    }
+
+    /**
+     * Blocks until every call dispatched so far has finished, failed or timed out.
+     */
+    public void flush() throws InterruptedException {
+        if (inFlight.get() == 0) {
+            return;
+        }
+        synchronized (idle) {
+            flushWaiters++;
+            try {
+                while (inFlight.get() > 0) {
+                    idle.wait();
+                }
+            } finally {
+                flushWaiters--;
+            }
+        }
+    }
+
+    /**
+     * Rejects new calls and waits for the outstanding ones. An interrupt while waiting does
+     * not cut closing short; the flag is restored afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                flush();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        watchdog.shutdownNow();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private void submit(TripObserver observer, TripEvent event) {
+        // Counted before closed is read, so close() either sees this call in flight or it sees
+        // closed and backs out.
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            leave();
+            reject(observer, event, "More than " + maxInFlight + " observer calls in flight");
+            return;
+        }
+        if (closed) {
+            leave();
+            reject(observer, event, "Dispatcher is closed");
+            return;
+        }
+        Call call = new Call(observer, event);
+        try {
+            call.deadline = watchdog.schedule(call::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            leave();
+            reject(observer, event, "Dispatcher is closed");
+            return;
+        }
+        Thread.startVirtualThread(call);
+    }
+
+    private void reject(TripObserver observer, TripEvent event, String reason) {
+        rejected.increment();
+        fail(observer, event, new RejectedExecutionException(reason));
+    }
+
+    private void fail(TripObserver observer, TripEvent event, Throwable cause) {
+        failures.increment();
+        try {
+            failureHandler.onFailure(observer, event, cause);
+        } catch (RuntimeException e) {
+            // A failing handler must not take the delivering thread down with it.
+        }
+    }
+
+    private void leave() {
+        if (inFlight.decrementAndGet() == 0 && flushWaiters > 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private Semaphore acquireLimit(TripObserver observer) {
+        return limits.compute(observer, (k, limit) -> {
+            if (limit == null) {
+                limit = new Limit(typeLimits.getOrDefault(observer.getClass(), defaultConcurrency));
+            }
+            limit.users++;
+            return limit;
+        }).permits;
+    }
+
+    private void releaseLimit(TripObserver observer) {
+        limits.computeIfPresent(observer, (k, limit) -> --limit.users == 0 ? null : limit);
+    }
+}
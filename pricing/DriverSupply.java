@@ -0,0 +1,12 @@
+package pricing;
+
+import java.util.Map;
+
+/**
+ * Drivers available right now, counted per surge zone. Read once per {@link SurgeEngine}
+ * recompute; zones without an entry have no available drivers.
+ */
+@FunctionalInterface
+public interface DriverSupply {
+    Map<String, Integer> availableByZone();
+}
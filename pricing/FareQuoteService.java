@@ -0,0 +1,266 @@
+package pricing;
+
+import core.Trip;
+import exceptions.InvalidParameterException;
+import strategy.CompiledFare;
+import strategy.FareCompiler;
+import strategy.FareStrategy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches fare quotes keyed by (pickup, dropoff, distance, strategy, surge version).
+ * <p>
+ * The cache is split into segments, each a bounded access-ordered LRU under its own lock,
+ * so a hit is one short critical section. Entries expire after a TTL. Concurrent misses on
+ * the same key share one computation: the first caller installs a pending future and the
+ * rest wait on it. When the surge version moves, every cached quote is dropped in bulk, and
+ * a quote computed while it moved is returned but not cached.
+ * <p>
+ * Misses on strategies that {@link FareCompiler} can flatten are priced straight from the
+ * distance; anything else is priced against a throwaway trip.
+ */
+public class FareQuoteService {
+    private static final String QUOTE_RIDER = "quote";
+
+    private static final class QuoteKey {
+        private final String pickup;
+        private final String dropoff;
+        private final double distanceMiles;
+        private final FareStrategy strategy;
+        private final long surgeVersion;
+        private final int hash;
+
+        private QuoteKey(String pickup, String dropoff, double distanceMiles, FareStrategy strategy, long surgeVersion) {
+            this.pickup = pickup;
+            this.dropoff = dropoff;
+            this.distanceMiles = distanceMiles;
+            this.strategy = strategy;
+            this.surgeVersion = surgeVersion;
+            int h = pickup.hashCode();
+            h = 31 * h + dropoff.hashCode();
+            h = 31 * h + Double.hashCode(distanceMiles);
+            h = 31 * h + System.identityHashCode(strategy);
+            this.hash = 31 * h + Long.hashCode(surgeVersion);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof QuoteKey)) {
+                return false;
+            }
+            QuoteKey other = (QuoteKey) o;
+            return strategy == other.strategy && surgeVersion == other.surgeVersion
+                    && Double.compare(distanceMiles, other.distanceMiles) == 0
+                    && pickup.equals(other.pickup) && dropoff.equals(other.dropoff);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<Double> fare = new CompletableFuture<>();
+        private volatile long expiresAtNanos = Long.MAX_VALUE;
+    }
+
+    private final class Segment extends LinkedHashMap<QuoteKey, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<QuoteKey, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+    private final LongSupplier surgeVersion;
+    private final LongSupplier clock;
+    private final AtomicLong lastSurgeVersion = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public FareQuoteService(int maxEntries, long ttlMillis, SurgeEngine surgeEngine) throws InvalidParameterException {
+        this(maxEntries, ttlMillis, surgeEngine == null ? () -> 0L : () -> surgeEngine.getSnapshot().getVersion(),
+                System::nanoTime);
+    }
+
+    public FareQuoteService(int maxEntries, long ttlMillis, LongSupplier surgeVersion, LongSupplier clock)
+            throws InvalidParameterException {
+        if (maxEntries <= 0) {
+            throw new InvalidParameterException("Max entries must be greater than 0");
+        }
+        if (ttlMillis <= 0) {
+            throw new InvalidParameterException("TTL must be greater than 0");
+        }
+        if (surgeVersion == null || clock == null) {
+            throw new InvalidParameterException("Surge version and clock cannot be null");
+        }
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(64, maxEntries / 64)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(Math.max(1, maxEntries / segmentCount));
+        }
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.surgeVersion = surgeVersion;
+        this.clock = clock;
+    }
+
+    /**
+     * @throws InterruptedException if interrupted while waiting for another caller's computation
+     *         of the same quote
+     */
+    public double quote(String pickup, String dropoff, double distanceMiles, FareStrategy strategy)
+            throws InvalidParameterException, InterruptedException {
+        if (pickup == null || dropoff == null || strategy == null) {
+            throw new InvalidParameterException("Pickup, dropoff and strategy cannot be null");
+        }
+        if (!(distanceMiles > 0) || Double.isInfinite(distanceMiles)) {
+            throw new InvalidParameterException("Distance must be a finite number greater than 0");
+        }
+        long version = surgeVersion.getAsLong();
+        observeSurgeVersion(version);
+        QuoteKey key = new QuoteKey(pickup, dropoff, distanceMiles, strategy, version);
+        Segment segment = segmentFor(key);
+        long now = clock.getAsLong();
+
+        Entry entry;
+        boolean owner = false;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && entry.expiresAtNanos <= now) {
+                segment.remove(key);
+                expirations.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry();
+                segment.put(key, entry);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            hits.increment();
+            return await(entry);
+        }
+
+        misses.increment();
+        try {
+            double fare = price(pickup, dropoff, distanceMiles, strategy);
+            if (surgeVersion.getAsLong() != version) {
+                // Priced under a version that is already gone; waiters get it, later callers do not.
+                synchronized (segment) {
+                    segment.remove(key, entry);
+                }
+            } else {
+                entry.expiresAtNanos = clock.getAsLong() + ttlNanos;
+            }
+            entry.fare.complete(fare);
+            return fare;
+        } catch (Throwable t) {
+            // Errors too: a pending entry that never completes blocks every caller for the key.
+            synchronized (segment) {
+                segment.remove(key, entry);
+            }
+            entry.fare.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    /**
+     * Drops every cached quote.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        invalidations.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private void observeSurgeVersion(long version) {
+        long seen = lastSurgeVersion.get();
+        if (version > seen && lastSurgeVersion.compareAndSet(seen, version) && seen != Long.MIN_VALUE) {
+            invalidateAll();
+        }
+    }
+
+    private Segment segmentFor(QuoteKey key) {
+        int h = key.hash ^ (key.hash >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static double price(String pickup, String dropoff, double distanceMiles, FareStrategy strategy)
+            throws InvalidParameterException {
+        FareStrategy compiled = FareCompiler.compile(strategy);
+        if (compiled instanceof CompiledFare) {
+            return ((CompiledFare) compiled).calculateFare(distanceMiles);
+        }
+        return strategy.calculateFare(new Trip(QUOTE_RIDER, pickup, dropoff, distanceMiles, strategy));
+    }
+
+    private static double await(Entry entry) throws InvalidParameterException, InterruptedException {
+        try {
+            return entry.fare.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InvalidParameterException) {
+                throw (InvalidParameterException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package pricing;
+
+import core.Trip;
+import core.TripEvent;
+import core.TripRegistry;
+import exceptions.InvalidParameterException;
+import observer.TripObserver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Derives per-zone surge multipliers from live trip events and driver availability.
+ * <p>
+ * Demand is the number of open requests in a zone: a REQUESTED event opens one, and it closes
+ * when the trip is accepted or, if still unmatched, cancelled. A cancel after acceptance does
+ * not touch demand again. The open count is a {@link LongAdder}, so the trip threads never
+ * contend. Supply is the zone's available drivers, read from a {@link DriverSupply} on each
+ * recompute. Both are smoothed with an exponential moving average ({@code decay} is the weight
+ * kept from the previous value) and the multiplier becomes
+ * {@code 1 + sensitivity * (demand / supply - 1)}, clamped to {@code [1, maxMultiplier]} and
+ * rounded to cents. Requests whose trip is not in the registry, or whose pickup maps to no
+ * zone, are counted in {@link #getUnresolvedEvents()} and left out. The result is published as an immutable {@link SurgeSnapshot}, so pricing
+ * reads it with a single volatile load and never waits on a recompute. A new version is only
+ * published when some multiplier actually changed.
+ */
+public class SurgeEngine implements TripObserver, AutoCloseable {
+    private static final class ZoneCounters {
+        private final LongAdder open = new LongAdder();
+        private double demand;
+        private double supply;
+    }
+
+    private final TripRegistry registry;
+    private final ZoneResolver zones;
+    private final DriverSupply supply;
+    private final double decay;
+    private final double sensitivity;
+    private final double maxMultiplier;
+    private final Map<String, ZoneCounters> counters = new ConcurrentHashMap<>();
+    // Zone of each open request, keyed by TripId (or the id string for legacy events).
+    private final Map<Object, ZoneCounters> openRequests = new ConcurrentHashMap<>();
+    private final LongAdder unresolved = new LongAdder();
+    private volatile SurgeSnapshot snapshot = SurgeSnapshot.EMPTY;
+    private ScheduledExecutorService scheduler;
+
+    public SurgeEngine(TripRegistry registry, ZoneResolver zones, DriverSupply supply, double decay,
+                       double sensitivity, double maxMultiplier) throws InvalidParameterException {
+        if (registry == null) {
+            throw new InvalidParameterException("Trip registry cannot be null");
+        }
+        if (zones == null) {
+            throw new InvalidParameterException("Zone resolver cannot be null");
+        }
+        if (supply == null) {
+            throw new InvalidParameterException("Driver supply cannot be null");
+        }
+        if (!(decay >= 0 && decay < 1)) {
+            throw new InvalidParameterException("Decay must be in [0, 1)");
+        }
+        if (!(sensitivity > 0)) {
+            throw new InvalidParameterException("Sensitivity must be greater than 0");
+        }
+        if (!(maxMultiplier >= 1)) {
+            throw new InvalidParameterException("Max multiplier must be at least 1");
+        }
+        this.registry = registry;
+        this.zones = zones;
+        this.supply = supply;
+        this.decay = decay;
+        this.sensitivity = sensitivity;
+        this.maxMultiplier = maxMultiplier;
+    }
+
+    @Override
+    public void onTripEvent(TripEvent event) {
+        switch (event.getType()) {
+            case REQUESTED:
+                openRequest(event);
+                break;
+            case ACCEPTED:
+            case CANCELLED:
+                closeRequest(event);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public SurgeSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public double multiplierFor(String zone) {
+        return snapshot.multiplierFor(zone);
+    }
+
+    public ZoneResolver getZoneResolver() {
+        return zones;
+    }
+
+    public long getUnresolvedEvents() {
+        return unresolved.sum();
+    }
+
+    /**
+     * Folds current open requests and available drivers into the smoothed totals and publishes
+     * the resulting multipliers. Called by the scheduler; safe to call directly.
+     */
+    public synchronized SurgeSnapshot recompute() {
+        Map<String, Integer> available = supply.availableByZone();
+        for (String zone : available.keySet()) {
+            zoneCounters(zone);
+        }
+        Map<String, Double> multipliers = new HashMap<>();
+        for (Map.Entry<String, ZoneCounters> entry : counters.entrySet()) {
+            ZoneCounters zone = entry.getValue();
+            long open = Math.max(0, zone.open.sum());
+            int drivers = available.getOrDefault(entry.getKey(), 0);
+            zone.demand = zone.demand * decay + open * (1 - decay);
+            zone.supply = zone.supply * decay + drivers * (1 - decay);
+            double pressure = zone.demand / Math.max(1.0, zone.supply);
+            double multiplier = Math.min(maxMultiplier, Math.max(1.0, 1 + sensitivity * (pressure - 1)));
+            multiplier = Math.round(multiplier * 100.0) / 100.0;
+            if (multiplier > 1.0) {
+                multipliers.put(entry.getKey(), multiplier);
+            }
+        }
+        SurgeSnapshot current = snapshot;
+        if (!multipliers.equals(current.getMultipliers())) {
+            snapshot = new SurgeSnapshot(current.getVersion() + 1, multipliers);
+        }
+        return snapshot;
+    }
+
+    public synchronized void start(long periodMillis) throws InvalidParameterException {
+        if (periodMillis <= 0) {
+            throw new InvalidParameterException("Recompute period must be greater than 0");
+        }
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "surge-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::recompute, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    private void openRequest(TripEvent event) {
+        ZoneCounters zone = countersFor(event);
+        if (zone == null) {
+            unresolved.increment();
+        } else if (openRequests.putIfAbsent(keyOf(event), zone) == null) {
+            zone.open.increment();
+        }
+    }
+
+    // Only the first of match or cancel closes a request, so a cancel after accept is a no-op.
+    private void closeRequest(TripEvent event) {
+        ZoneCounters zone = openRequests.remove(keyOf(event));
+        if (zone != null) {
+            zone.open.decrement();
+        }
+    }
+
+    private ZoneCounters countersFor(TripEvent event) {
+        Trip trip = event.getId() != null ? registry.get(event.getId()) : registry.get(event.getTripId());
+        String zone = trip == null ? null : zones.zoneOf(trip.getPickupLocation());
+        return zone == null ? null : zoneCounters(zone);
+    }
+
+    private ZoneCounters zoneCounters(String zone) {
+        ZoneCounters zoneCounters = counters.get(zone);
+        return zoneCounters != null ? zoneCounters : counters.computeIfAbsent(zone, z -> new ZoneCounters());
+    }
+
+    private static Object keyOf(TripEvent event) {
+        return event.getId() != null ? event.getId() : event.getTripId();
+    }
+}
@@ -0,0 +1,33 @@
+package pricing;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable set of zone multipliers published by the {@link SurgeEngine}. Zones without
+ * an entry price at 1.0. The version increases with every publication.
+ */
+public final class SurgeSnapshot {
+    static final SurgeSnapshot EMPTY = new SurgeSnapshot(0, Collections.emptyMap());
+
+    private final long version;
+    private final Map<String, Double> multipliers;
+
+    SurgeSnapshot(long version, Map<String, Double> multipliers) {
+        this.version = version;
+        this.multipliers = Collections.unmodifiableMap(multipliers);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public double multiplierFor(String zone) {
+        Double multiplier = zone == null ? null : multipliers.get(zone);
+        return multiplier != null ? multiplier : 1.0;
+    }
+
+    public Map<String, Double> getMultipliers() {
+        return multipliers;
+    }
+}
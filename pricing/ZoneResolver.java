@@ -0,0 +1,9 @@
+package pricing;
+
+/**
+ * Maps a trip's free-form pickup location to the surge zone it belongs to.
+ */
+@FunctionalInterface
+public interface ZoneResolver {
+    String zoneOf(String location);
+}
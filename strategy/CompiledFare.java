@@ -0,0 +1,49 @@
+package strategy;
+
+import core.Trip;
+import exceptions.InvalidParameterException;
+
+/**
+ * A strategy tree flattened to {@code intercept + slope * distance}. Produced by
+ * {@link FareCompiler}; reports the name of the strategy it was compiled from.
+ */
+public final class CompiledFare implements FareStrategy {
+    private final FareStrategy source;
+    private final double intercept;
+    private final double slope;
+
+    CompiledFare(FareStrategy source, double intercept, double slope) {
+        this.source = source;
+        this.intercept = intercept;
+        this.slope = slope;
+    }
+
+    @Override
+    public double calculateFare(Trip trip) throws InvalidParameterException {
+        return calculateFare(trip.getDistanceMiles());
+    }
+
+    public double calculateFare(double distanceMiles) throws InvalidParameterException {
+        if (distanceMiles <= 0) {
+            throw new InvalidParameterException("Distance must be greater than 0");
+        }
+        return Math.fma(slope, distanceMiles, intercept);
+    }
+
+    public FareStrategy getSource() {
+        return source;
+    }
+
+    public double getIntercept() {
+        return intercept;
+    }
+
+    public double getSlope() {
+        return slope;
+    }
+
+    @Override
+    public String name() {
+        return source.name();
+    }
+}
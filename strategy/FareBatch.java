@@ -0,0 +1,149 @@
+package strategy;
+
+import core.Trip;
+import exceptions.InvalidParameterException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Columnar fare pricing for settlement and what-if runs.
+ * <p>
+ * The strategy is flattened with {@link FareCompiler} and every distance is priced with the
+ * same fused multiply-add as {@link CompiledFare}, so results are bit-identical to the
+ * compiled per-trip path. Uses the JDK Vector API when the build includes the vector kernel
+ * ({@code -Pvector}) and the JVM is started with {@code --add-modules jdk.incubator.vector},
+ * otherwise a scalar loop. A strategy the compiler cannot flatten (a zone surge, a user subclass)
+ * is priced one probe trip at a time through its own {@code calculateFare}.
+ */
+public final class FareBatch {
+    private static final MethodHandle VECTOR_KERNEL = vectorKernel();
+    private static final int PARALLEL_CHUNK = 1 << 16;
+    private static final String PROBE_RIDER = "batch";
+    private static final String PROBE_LOCATION = "batch";
+
+    private FareBatch() {
+    }
+
+    public static boolean isVectorized() {
+        return VECTOR_KERNEL != null;
+    }
+
+    public static void calculateFares(FareStrategy strategy, double[] distances, double[] out)
+            throws InvalidParameterException {
+        CompiledFare fare = prepare(strategy, distances, out);
+        if (fare == null) {
+            priceEach(strategy, distances, out);
+            return;
+        }
+        kernel(fare.getIntercept(), fare.getSlope(), distances, out, 0, distances.length);
+    }
+
+    /**
+     * Same as {@link #calculateFares} but splits large inputs across the common fork-join pool.
+     * Strategies that cannot be flattened are priced sequentially.
+     */
+    public static void calculateFaresParallel(FareStrategy strategy, double[] distances, double[] out)
+            throws InvalidParameterException {
+        CompiledFare fare = prepare(strategy, distances, out);
+        if (fare == null) {
+            priceEach(strategy, distances, out);
+            return;
+        }
+        if (distances.length <= PARALLEL_CHUNK) {
+            kernel(fare.getIntercept(), fare.getSlope(), distances, out, 0, distances.length);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(
+                new BatchTask(fare.getIntercept(), fare.getSlope(), distances, out, 0, distances.length));
+    }
+
+    // Null when the strategy cannot be flattened and has to be priced trip by trip.
+    private static CompiledFare prepare(FareStrategy strategy, double[] distances, double[] out)
+            throws InvalidParameterException {
+        if (distances == null || out == null) {
+            throw new InvalidParameterException("Distance and output arrays cannot be null");
+        }
+        if (out.length < distances.length) {
+            throw new InvalidParameterException("Output array is shorter than distance array");
+        }
+        FareStrategy compiled = FareCompiler.compile(strategy);
+        for (double distance : distances) {
+            if (!(distance > 0)) {
+                throw new InvalidParameterException("Distance must be greater than 0");
+            }
+        }
+        return compiled instanceof CompiledFare ? (CompiledFare) compiled : null;
+    }
+
+    private static void priceEach(FareStrategy strategy, double[] distances, double[] out)
+            throws InvalidParameterException {
+        for (int i = 0; i < distances.length; i++) {
+            out[i] = strategy.calculateFare(
+                    new Trip(PROBE_RIDER, PROBE_LOCATION, PROBE_LOCATION, distances[i], strategy));
+        }
+    }
+
+    private static void kernel(double intercept, double slope, double[] distances, double[] out, int from, int to) {
+        if (VECTOR_KERNEL != null) {
+            try {
+                VECTOR_KERNEL.invokeExact(intercept, slope, distances, out, from, to);
+            } catch (Throwable t) {
+                throw new IllegalStateException("Vector fare kernel failed", t);
+            }
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            out[i] = Math.fma(slope, distances[i], intercept);
+        }
+    }
+
+    // The kernel is only compiled by the vector profile, so it is looked up rather than linked.
+    private static MethodHandle vectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().findStatic(
+                    Class.forName("strategy.VectorFareKernel"), "apply",
+                    MethodType.methodType(void.class, double.class, double.class,
+                            double[].class, double[].class, int.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double intercept;
+        private final double slope;
+        private final double[] distances;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        private BatchTask(double intercept, double slope, double[] distances, double[] out, int from, int to) {
+            this.intercept = intercept;
+            this.slope = slope;
+            this.distances = distances;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                kernel(intercept, slope, distances, out, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(intercept, slope, distances, out, from, mid),
+                    new BatchTask(intercept, slope, distances, out, mid, to));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package strategy;
+
+import exceptions.InvalidParameterException;
+
+/**
+ * Flattens a composed strategy tree into a single {@link CompiledFare}.
+ * <p>
+ * Every built-in strategy is linear in distance: StandardFare is {@code base + perMile * d},
+ * SharedRideFare scales that by {@code (1 - discount)} and SurgeFare by its multiplier, so
+ * any nesting of them collapses to one intercept and one slope. Only those exact classes are
+ * flattened: a subclass may override {@code calculateFare}, so a tree containing one, or any
+ * strategy the compiler does not know, is returned unchanged.
+ */
+public final class FareCompiler {
+
+    private FareCompiler() {
+    }
+
+    public static FareStrategy compile(FareStrategy strategy) throws InvalidParameterException {
+        if (strategy == null) {
+            throw new InvalidParameterException("Fare strategy cannot be null");
+        }
+        if (strategy instanceof CompiledFare) {
+            return strategy;
+        }
+        double factor = 1.0;
+        FareStrategy node = strategy;
+        while (node.getClass() == SurgeFare.class) {
+            SurgeFare surge = (SurgeFare) node;
+            factor *= surge.getMultiplier();
+            node = surge.getBase();
+        }
+        if (node.getClass() == StandardFare.class) {
+            StandardFare standard = (StandardFare) node;
+            return new CompiledFare(strategy, standard.getBaseFare() * factor,
+                    standard.getPerMileRate() * factor);
+        }
+        if (node.getClass() == SharedRideFare.class) {
+            SharedRideFare shared = (SharedRideFare) node;
+            factor *= 1 - shared.getDiscountRate();
+            return new CompiledFare(strategy, shared.getBaseFare() * factor,
+                    shared.getPerMileRate() * factor);
+        }
+        if (node instanceof CompiledFare) {
+            CompiledFare compiled = (CompiledFare) node;
+            return new CompiledFare(strategy, compiled.getIntercept() * factor,
+                    compiled.getSlope() * factor);
+        }
+        return strategy;
+    }
+}
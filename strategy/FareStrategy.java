@@ -6,4 +6,12 @@ import exceptions.InvalidParameterException;
 public interface FareStrategy {
     double calculateFare(Trip trip) throws InvalidParameterException;
     String name();
+
+    /**
+     * Prices a column of trip distances into {@code out}. Strategies that {@link FareCompiler}
+     * can flatten take the fused batch kernel, the rest are priced per trip; see {@link FareBatch}.
+     */
+    default void calculateFares(double[] distances, double[] out) throws InvalidParameterException {
+        FareBatch.calculateFares(this, distances, out);
+    }
 }
@@ -24,6 +24,18 @@ public class SharedRideFare implements FareStrategy {
         this.discountRate = discountRate;
     }
 
+    double getBaseFare() {
+        return baseFare;
+    }
+
+    double getPerMileRate() {
+        return perMileRate;
+    }
+
+    double getDiscountRate() {
+        return discountRate;
+    }
+
     @Override
     public double calculateFare(Trip trip) throws InvalidParameterException {
         if (trip.getDistanceMiles() <= 0) {
@@ -32,6 +44,23 @@ public class SharedRideFare implements FareStrategy {
         return (baseFare + trip.getDistanceMiles() * perMileRate) * (1 - discountRate);
     }
 
+    /**
+     * This fare with the surge layers of {@code current} kept on top of it, for a trip moving
+     * into a pool: a {@link SurgeFare} or {@link ZoneSurgeFare} still applies its multiplier to
+     * the shared price. Any other strategy is replaced by this fare.
+     */
+    public FareStrategy under(FareStrategy current) throws InvalidParameterException {
+        if (current != null && current.getClass() == SurgeFare.class) {
+            SurgeFare surge = (SurgeFare) current;
+            return new SurgeFare(under(surge.getBase()), surge.getMultiplier());
+        }
+        if (current != null && current.getClass() == ZoneSurgeFare.class) {
+            ZoneSurgeFare zone = (ZoneSurgeFare) current;
+            return new ZoneSurgeFare(under(zone.getBase()), zone.getSurgeEngine());
+        }
+        return this;
+    }
+
     @Override
     public String name() {
         return "SharedRideFare";
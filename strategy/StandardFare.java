@@ -18,6 +18,14 @@ public class StandardFare implements FareStrategy {
         this.perMileRate = perMileRate;
     }
 
+    double getBaseFare() {
+        return baseFare;
+    }
+
+    double getPerMileRate() {
+        return perMileRate;
+    }
+
     @Override
     public double calculateFare(Trip trip) throws InvalidParameterException {
         if (trip.getDistanceMiles() <= 0) {
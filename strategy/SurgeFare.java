@@ -18,6 +18,14 @@ public class SurgeFare implements FareStrategy {
         this.multiplier = multiplier;
     }
 
+    FareStrategy getBase() {
+        return base;
+    }
+
+    double getMultiplier() {
+        return multiplier;
+    }
+
     @Override
     public double calculateFare(Trip trip) throws InvalidParameterException {
         return base.calculateFare(trip) * multiplier;
@@ -0,0 +1,27 @@
+package strategy;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// Compiled only by the vector profile; FareBatch looks it up when jdk.incubator.vector is present.
+final class VectorFareKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorFareKernel() {
+    }
+
+    static void apply(double intercept, double slope, double[] distances, double[] out, int from, int to) {
+        DoubleVector slopes = DoubleVector.broadcast(SPECIES, slope);
+        DoubleVector intercepts = DoubleVector.broadcast(SPECIES, intercept);
+        int i = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, distances, i)
+                    .fma(slopes, intercepts)
+                    .intoArray(out, i);
+        }
+        for (; i < to; i++) {
+            out[i] = Math.fma(slope, distances[i], intercept);
+        }
+    }
+}
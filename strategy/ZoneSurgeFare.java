@@ -0,0 +1,44 @@
+package strategy;
+
+import core.Trip;
+import exceptions.InvalidParameterException;
+import pricing.SurgeEngine;
+
+/**
+ * SurgeFare whose multiplier is the live value for the trip's pickup zone, read from the
+ * surge engine's latest published snapshot.
+ */
+public class ZoneSurgeFare implements FareStrategy {
+    private final FareStrategy base;
+    private final SurgeEngine surgeEngine;
+
+    public ZoneSurgeFare(FareStrategy base, SurgeEngine surgeEngine) throws InvalidParameterException {
+        if (base == null) {
+            throw new InvalidParameterException("Base strategy cannot be null");
+        }
+        if (surgeEngine == null) {
+            throw new InvalidParameterException("Surge engine cannot be null");
+        }
+        this.base = base;
+        this.surgeEngine = surgeEngine;
+    }
+
+    @Override
+    public double calculateFare(Trip trip) throws InvalidParameterException {
+        String zone = surgeEngine.getZoneResolver().zoneOf(trip.getPickupLocation());
+        return base.calculateFare(trip) * surgeEngine.multiplierFor(zone);
+    }
+
+    FareStrategy getBase() {
+        return base;
+    }
+
+    SurgeEngine getSurgeEngine() {
+        return surgeEngine;
+    }
+
+    @Override
+    public String name() {
+        return "ZoneSurgeFare";
+    }
+}